@@ -0,0 +1,48 @@
+package fallingsand;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * BurnBenchmark.java: burnObject() from FIRE in a forest of WOOD and LEAF.
+ * Calls are spread over random cells, and the forest is regrown before every iteration.
+ *
+ * @author Jun Park
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class BurnBenchmark {
+  private static final int CALLS = 10_000;
+
+  private SimulationEngine engine;
+  private int[] rows;
+  private int[] cols;
+
+  @Setup(Level.Trial)
+  public void pickCells() {
+    Random random = new Random(Worlds.SEED);
+    rows = new int[CALLS];
+    cols = new int[CALLS];
+    for (int i = 0; i < CALLS; i++) {
+      rows[i] = random.nextInt(1000);
+      cols[i] = random.nextInt(1000);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    engine = Worlds.create("1000x1000", "forest");
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void burnObject() {
+    for (int i = 0; i < CALLS; i++)
+      engine.burnObject(rows[i], cols[i], SimulationEngine.FIRE);
+  }
+}
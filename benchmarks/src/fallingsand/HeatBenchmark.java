@@ -0,0 +1,52 @@
+package fallingsand;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * HeatBenchmark.java: one step of the heat field, on its own and with the phase changes it drives
+ * (SimulationEngine.stepHeat()). The field has the game's scale of 4, and the world is rebuilt
+ * before every iteration. fieldScalar() runs field() with the JIT's vectorization turned off.
+ *
+ * @author Jun Park
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class HeatBenchmark {
+  @Param({"mixed", "water"})
+  public String scene;
+
+  @Param({"1000x1000", "2000x2000"})
+  public String size;
+
+  private SimulationEngine engine;
+  private HeatField heat;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    engine = Worlds.create(size, scene);
+    heat = new HeatField(engine, 4);
+    engine.setHeat(heat);
+  }
+
+  @Benchmark
+  public void field() {
+    heat.step();
+  }
+
+  // The same step with the JIT's auto-vectorization turned off, to see what the vector instructions are worth
+  @Benchmark
+  @Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true", "-XX:-UseSuperWord"})
+  public void fieldScalar() {
+    heat.step();
+  }
+
+  @Benchmark
+  public void stepHeat() {
+    engine.stepHeat();
+  }
+}
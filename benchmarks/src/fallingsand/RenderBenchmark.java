@@ -0,0 +1,59 @@
+package fallingsand;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * RenderBenchmark.java: SandLab.updateDisplay() render passes into the SandDisplay image.
+ * Uses a SandDisplay without a window, so it also runs without a windowing system.
+ *
+ * @author Jun Park
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class RenderBenchmark {
+  private static final int CHANGES = 300; // Cells changed per frame in a mostly settled scene.
+
+  @Param({"150x100", "1000x1000", "4000x4000"})
+  public String size;
+
+  private SimulationEngine engine;
+  private SandLab lab;
+  private int[] rows;
+  private int[] cols;
+  private int frame;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    engine = Worlds.create(size, "mixed");
+    lab = new SandLab(engine, new SandDisplay(engine.getNumRows(), engine.getNumCols()));
+    Random random = new Random(Worlds.SEED);
+    rows = new int[CHANGES];
+    cols = new int[CHANGES];
+    for (int i = 0; i < CHANGES; i++) {
+      rows[i] = random.nextInt(engine.getNumRows());
+      cols[i] = random.nextInt(engine.getNumCols());
+    }
+  }
+
+  /** Every cell is redrawn, like the first frame or after CLEAR. */
+  @Benchmark
+  public void fullFrame() {
+    engine.markAllDirty();
+    lab.updateDisplay();
+  }
+
+  /** Only a few hundred cells changed since the last frame. */
+  @Benchmark
+  public void fewChanges() {
+    frame++;
+    for (int i = 0; i < CHANGES; i++)
+      engine.set(rows[i], cols[i], frame % 2 == 0 ? SimulationEngine.SAND : SimulationEngine.WATER);
+    lab.updateDisplay();
+  }
+}
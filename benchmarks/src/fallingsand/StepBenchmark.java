@@ -0,0 +1,56 @@
+package fallingsand;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * StepBenchmark.java: SimulationEngine.step(), tick() and sweep() on typical fills.
+ * step() always does work in an awake chunk; tick() skips the sleeping chunks, so it shows the
+ * cost per step of simulated time. sweep() is timed per sweep, which is worth numCells steps.
+ * The world is rebuilt before every iteration, so each iteration starts from the same scene.
+ *
+ * @author Jun Park
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class StepBenchmark {
+  private static final int STEPS = 10_000;
+
+  @Param({"water", "sand", "forest"})
+  public String scene;
+
+  @Param({"150x100", "1000x1000"})
+  public String size;
+
+  private SimulationEngine engine;
+  private SimulationEngine sweeper; // The same world in the sweep mode.
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    engine = Worlds.create(size, scene);
+    sweeper = Worlds.create(size, scene);
+    sweeper.setTickMode(SimulationEngine.TickMode.SWEEP);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(STEPS)
+  public void step() {
+    for (int i = 0; i < STEPS; i++)
+      engine.step();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(STEPS)
+  public void tick() {
+    engine.tick(STEPS);
+  }
+
+  @Benchmark
+  public void sweep() {
+    sweeper.sweep();
+  }
+}
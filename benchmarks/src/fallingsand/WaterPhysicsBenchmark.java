@@ -0,0 +1,40 @@
+package fallingsand;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * WaterPhysicsBenchmark.java: waterPhysics() on wide rows of settled WATER.
+ * Two rows of WATER between METAL walls, so every call scans the whole row below and moves nothing.
+ * That is the worst case of a wide ocean.
+ *
+ * @author Jun Park
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class WaterPhysicsBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int width;
+
+  private SimulationEngine engine;
+  private int col;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    engine = new SimulationEngine(2, width, Worlds.SEED);
+    for (int row = 0; row < 2; row++) {
+      for (int c = 0; c < width; c++)
+        engine.set(row, c, c == 0 || c == width - 1 ? SimulationEngine.METAL : SimulationEngine.WATER);
+    }
+  }
+
+  @Benchmark
+  public void waterPhysics() {
+    col = col % (width - 2) + 1; // Walk along the row, so both the left and the right scans get all lengths.
+    engine.waterPhysics(0, col, SimulationEngine.WATER);
+  }
+}
@@ -0,0 +1,18 @@
+package fallingsand;
+
+/**
+ * Worlds.java: builds the worlds the benchmarks run on.
+ *
+ * @author Jun Park
+ */
+class Worlds {
+  static final long SEED = 42;
+
+  /** Create an engine from a "ROWSxCOLS" size and fill it with the named scene (see Scenes). */
+  static SimulationEngine create(String size, String scene) {
+    String[] parts = size.split("x");
+    SimulationEngine engine = new SimulationEngine(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), SEED);
+    Scenes.fill(engine, scene, SEED);
+    return engine;
+  }
+}
@@ -0,0 +1,79 @@
+package fallingsand;
+
+/**
+ * AdaptiveStepper.java: decides how many steps each tick of the game runs.
+ * The player asks for a number of steps per second; the stepper measures what a step and a frame
+ * cost on this machine and this world, and runs as many of them as fit in the tick's share of time
+ * left after drawing. So a huge world or a slow machine runs slower instead of freezing the window,
+ * and the achieved rates can be shown next to the target.
+ *
+ * @author Jun Park
+ */
+public class AdaptiveStepper {
+  private static final double SMOOTHING = 0.1; // Weight of the newest measurement in the running averages.
+  private static final double HEADROOM = 0.8; // Use at most this much of the time left after drawing.
+
+  private final long tickNanos;
+  private final long frameNanos;
+  private double nanosPerStep = 100; // Running average; a guess until the first measurement.
+  private double nanosPerFrame;
+  private double carry; // Fraction of a step left over from the last tick.
+
+  private long windowStart = System.nanoTime();
+  private long windowSteps, windowFrames;
+  private double stepsPerSecond, framesPerSecond;
+
+  /** @param tickNanos Time between ticks.
+   *  @param frameNanos Time between frames.
+   */
+  public AdaptiveStepper(long tickNanos, long frameNanos) {
+    this.tickNanos = tickNanos;
+    this.frameNanos = frameNanos;
+  }
+
+  /** @return Steps to run this tick to get close to targetPerSecond, without running out of time. */
+  public long stepsFor(long targetPerSecond) {
+    double wanted = (double)targetPerSecond * tickNanos / 1e9 + carry;
+    double drawing = Math.min(0.5, nanosPerFrame / frameNanos); // Share of the time spent drawing.
+    double affordable = tickNanos * (1 - drawing) * HEADROOM / nanosPerStep;
+    double steps = Math.min(wanted, affordable);
+    long whole = (long)steps;
+    carry = steps < wanted ? 0 : steps - whole; // Don't save up steps that didn't fit.
+    return whole;
+  }
+
+  /** The last tick ran the given number of steps in nanos. */
+  public void ranSteps(long steps, long nanos) {
+    windowSteps += steps;
+    if (steps > 0)
+      nanosPerStep += SMOOTHING * ((double)Math.max(nanos, 1) / steps - nanosPerStep);
+  }
+
+  /** A frame took nanos to render. */
+  public void rendered(long nanos) {
+    windowFrames++;
+    nanosPerFrame += SMOOTHING * (nanos - nanosPerFrame);
+  }
+
+  /** Updates the achieved rates once a second.
+   *  @return True if they were updated.
+   */
+  public boolean poll(long now) {
+    long elapsed = now - windowStart;
+    if (elapsed < 1_000_000_000)
+      return false;
+    stepsPerSecond = windowSteps * 1e9 / elapsed;
+    framesPerSecond = windowFrames * 1e9 / elapsed;
+    windowStart = now;
+    windowSteps = windowFrames = 0;
+    return true;
+  }
+
+  public double getStepsPerSecond() {
+    return stepsPerSecond;
+  }
+
+  public double getFramesPerSecond() {
+    return framesPerSecond;
+  }
+}
@@ -0,0 +1,73 @@
+package fallingsand;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Autosave.java: saves a Snapshot of the engine every so often without stalling the game.
+ * The caller's thread only copies the board (one arraycopy); compressing and writing it
+ * happen on a background thread. If the last save is still being written, the next one is skipped.
+ *
+ * @author Jun Park
+ */
+public class Autosave implements Closeable {
+  private final File file;
+  private final long intervalNanos;
+  private final ExecutorService writer;
+  private final AtomicBoolean busy = new AtomicBoolean();
+  private long lastSave;
+
+  /** Save to the file at most once every intervalMillis. */
+  public Autosave(File file, long intervalMillis) {
+    this.file = file;
+    intervalNanos = intervalMillis * 1_000_000;
+    lastSave = System.nanoTime();
+    writer = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "autosave");
+      thread.setDaemon(true); // Don't keep the program alive.
+      return thread;
+    });
+  }
+
+  /** Called every frame; starts a save if the interval has passed.
+   * @return True if a save was started.
+   */
+  public boolean poll(SimulationEngine engine) {
+    if (System.nanoTime() - lastSave < intervalNanos)
+      return false;
+    return save(engine);
+  }
+
+  /** Start saving the board as it is now.
+   * @return False if the last save is still being written.
+   */
+  public boolean save(SimulationEngine engine) {
+    if (!busy.compareAndSet(false, true))
+      return false;
+    lastSave = System.nanoTime();
+    byte[] cells = engine.getCells().clone();
+    int numRows = engine.getNumRows();
+    int numCols = engine.getNumCols();
+    writer.execute(() -> {
+      try {
+        Snapshot.write(cells, numRows, numCols, file);
+      } catch (IOException e) {
+        System.err.println("Autosave to " + file + " failed: " + e);
+      } finally {
+        busy.set(false);
+      }
+    });
+    return true;
+  }
+
+  /** Wait for the save being written, if any, and stop the background thread. */
+  public void close() {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
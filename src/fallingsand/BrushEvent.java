@@ -0,0 +1,28 @@
+package fallingsand;
+
+/**
+ * BrushEvent.java: one press, drag or release of the mouse on the board, with the tool and brush size
+ * chosen at that moment. The window queues them and the simulation thread paints them (see SandLab),
+ * so the window never waits for the simulation and no drag position gets lost between frames.
+ *
+ * @author Jun Park
+ */
+public final class BrushEvent {
+  // Kinds
+  public static final int PRESS = 0;
+  public static final int DRAG = 1;
+  public static final int RELEASE = 2;
+
+  public final int kind;
+  public final int row, col;
+  public final int tool; // Particle type to paint.
+  public final int brush; // Radius of the brush; 0 paints one cell.
+
+  public BrushEvent(int kind, int row, int col, int tool, int brush) {
+    this.kind = kind;
+    this.row = row;
+    this.col = col;
+    this.tool = tool;
+    this.brush = brush;
+  }
+}
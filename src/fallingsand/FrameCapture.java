@@ -0,0 +1,134 @@
+package fallingsand;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * FrameCapture.java: records the board every few frames without slowing the game.
+ * The game's thread only copies the cells into a free buffer and queues it; encoder threads
+ * drain the queue into numbered PNGs (frame-000042.png, see WorldImage) or into one raw stream.
+ * There is a fixed number of buffers, so when the encoders fall behind the frame is dropped
+ * (and counted) instead of waiting for them.
+ *
+ * A raw stream is MAGIC, VERSION, numRows and numCols, then for every frame its number (an int)
+ * and the cells row by row. It is written by a single thread, so the frames stay in order.
+ *
+ * @author Jun Park
+ */
+public class FrameCapture implements Closeable {
+  static final int MAGIC = 0x46535246; // "FSRF"
+  static final int VERSION = 1;
+
+  private final File target;
+  private final boolean raw;
+  private final int every;
+  private final int numRows, numCols;
+  private final BlockingQueue<byte[]> free; // Buffers ready to be filled.
+  private final ExecutorService encoders;
+  private final FileChannel stream; // Null unless raw.
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private long frame; // Frames seen by capture().
+
+  /** Capture an engine's board into target: a directory of PNGs, or a raw stream if the name ends in ".raw".
+   * @param every Capture one frame out of every.
+   * @param threads Number of PNG encoders (a raw stream always has one).
+   * @param buffers Number of frames that can wait for an encoder.
+   */
+  public FrameCapture(File target, SimulationEngine engine, int every, int threads, int buffers) throws IOException {
+    this.target = target;
+    this.every = Math.max(1, every);
+    raw = target.getName().endsWith(".raw");
+    numRows = engine.getNumRows();
+    numCols = engine.getNumCols();
+    free = new ArrayBlockingQueue<>(buffers);
+    for (int k = 0; k < buffers; k++)
+      free.add(new byte[numRows * numCols]);
+    if (raw) {
+      stream = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING);
+      ByteBuffer header = ByteBuffer.allocate(16).putInt(MAGIC).putInt(VERSION).putInt(numRows).putInt(numCols);
+      header.flip();
+      while (header.hasRemaining())
+        stream.write(header);
+      threads = 1;
+    } else {
+      stream = null;
+      Files.createDirectories(target.toPath());
+    }
+    encoders = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "frame-encoder");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY); // The game comes first.
+      return thread;
+    });
+  }
+
+  /** Called once per frame by the game. Copies the board and queues it, unless the frame is skipped
+   *  or every buffer is still waiting for an encoder.
+   */
+  public void capture(SimulationEngine engine) {
+    long number = frame++;
+    if (number % every != 0)
+      return;
+    byte[] cells = free.poll();
+    if (cells == null) {
+      dropped.incrementAndGet();
+      return;
+    }
+    System.arraycopy(engine.getCells(), 0, cells, 0, cells.length);
+    try {
+      encoders.execute(() -> encode(number, cells));
+    } catch (RejectedExecutionException e) { // Closed.
+      free.add(cells);
+    }
+  }
+
+  private void encode(long number, byte[] cells) {
+    try {
+      if (raw) {
+        ByteBuffer header = ByteBuffer.allocate(4).putInt((int)number);
+        header.flip();
+        ByteBuffer[] frame = {header, ByteBuffer.wrap(cells)};
+        while (frame[1].hasRemaining())
+          stream.write(frame);
+      } else {
+        WorldImage.write(cells, numRows, numCols, new File(target, String.format("frame-%06d.png", number)));
+      }
+      written.incrementAndGet();
+    } catch (IOException e) {
+      if (failed.getAndIncrement() == 0)
+        System.err.println("Frame capture to " + target + " failed: " + e);
+    } finally {
+      free.add(cells);
+    }
+  }
+
+  public long getWrittenCount() {
+    return written.get();
+  }
+
+  /** @return Frames that were not captured because the encoders were behind. */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /** Write the queued frames, then stop. */
+  public void close() throws IOException {
+    encoders.shutdown();
+    try {
+      encoders.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (stream != null)
+      stream.close();
+    System.out.printf("Captured %,d frames to %s (%,d dropped, %,d failed)%n", written.get(), target,
+                      dropped.get(), failed.get());
+  }
+}
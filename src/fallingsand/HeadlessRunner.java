@@ -0,0 +1,52 @@
+package fallingsand;
+
+/**
+ * HeadlessRunner.java: runs the rules on a SimulationEngine without any window and reports the throughput.
+ * Usage: java fallingsand.SandLab --headless [width] [height] [steps] [scene] [seed] [threads] [mode]
+ *
+ * @author Jun Park
+ */
+public class HeadlessRunner {
+  private static final long REPORT_INTERVAL = 10_000_000; // Print progress every 10^7 steps.
+
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    long steps = args.length > 2 ? Long.parseLong(args[2]) : 100_000_000L;
+    String scene = args.length > 3 ? args[3] : "mixed";
+    long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+    int threads = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+    SimulationEngine.TickMode mode = args.length > 6 ? SimulationEngine.TickMode.valueOf(args[6].toUpperCase())
+                                                     : SimulationEngine.TickMode.STOCHASTIC;
+
+    SimulationEngine engine = new SimulationEngine(height, width, seed);
+    Scenes.fill(engine, scene, seed);
+    engine.setParallelism(threads);
+    engine.setTickMode(mode);
+    System.out.println("Running " + steps + " " + mode.name().toLowerCase() + " steps on a " + width + "x" + height + " " + scene + " world"
+                       + (threads > 1 ? " with " + threads + " threads..." : "..."));
+
+    long start = System.nanoTime();
+    for (long done = 0; done < steps; done += REPORT_INTERVAL) {
+      long n = Math.min(REPORT_INTERVAL, steps - done);
+      engine.tick(n);
+      if (done + n < steps)
+        report(engine, done + n, System.nanoTime() - start);
+    }
+    long elapsed = System.nanoTime() - start;
+    report(engine, steps, elapsed);
+    StringBuilder population = new StringBuilder("Population:");
+    for (int type = 0; type < Interactions.TYPES; type++)
+      if (engine.getPopulation(type) != 0)
+        population.append(String.format(" %s %,d", SimulationEngine.typeName(type), engine.getPopulation(type)));
+    System.out.println(population);
+    engine.setParallelism(1); // Let the pool's threads go.
+  }
+
+  private static void report(SimulationEngine engine, long steps, long nanos) {
+    double seconds = nanos / 1e9;
+    int awake = engine.getAwakeChunkCount();
+    System.out.printf("%,d steps in %.3f s: %,.0f steps/s (chunks: %,d awake, %,d asleep)%n", steps, seconds,
+                      steps / Math.max(seconds, 1e-9), awake, engine.getChunkCount() - awake);
+  }
+}
@@ -0,0 +1,286 @@
+package fallingsand;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static fallingsand.SimulationEngine.*;
+
+/**
+ * HeatField.java: the temperature of the board in degrees, one value per scale * scale block of cells.
+ * Every step heat flows between neighbouring blocks, as fast as what they hold conducts it (air hardly
+ * does), and each block is pulled toward the temperature of its sources: FIRE, LAVA and ICE keep their
+ * blocks hot or cold and WATER cools (see Interactions.temperature()); every block also slowly drifts
+ * back to AMBIENT. A coolant takes up the heat of the hot sources in its block as fast as they give it:
+ * their pull is cut down to the coolant's, so LAVA that mixes with WATER sets instead of boiling it all.
+ * The engine changes the particles whose block is past their phase change temperature (see SimulationEngine.stepHeat()).
+ * What a block holds is only counted again for the chunks written since the last step. The step is
+ * plain loops over float arrays, bound by memory rather than arithmetic: HeatBenchmark.fieldScalar(), with the
+ * JIT's vectorization off, is as fast as field(). setParallelism() steps bands of rows on a pool of its own.
+ *
+ * @author Jun Park
+ */
+public final class HeatField {
+  public static final float AMBIENT = 20; // Temperature of an empty board.
+  private static final float SPREAD = 0.2f; // Share of the difference to each neighbour that flows per step, for the best conductors.
+  private static final float AMBIENT_PULL = 0.005f; // Share of the difference to AMBIENT a block loses per step.
+  private static final int PARALLEL_BLOCKS = 1 << 15; // Fields smaller than this run in one band.
+
+  private final SimulationEngine engine;
+  private final int scale, shift;
+  private final int rows, cols; // Size in blocks.
+  private float[] temperatures; // temperatures[blockRow * cols + blockCol]
+  private float[] next; // The next step is written here, then the two are swapped.
+  // What each block holds: a step takes a block from t to (t + conduct * (the neighbours - 4 t) + gain) * damping,
+  // where damping is 1 / (1 + the sum of the pulls toward the sources), so even strong pulls never overshoot.
+  private final float[] gain;
+  private final float[] damping;
+  private final float[] conduct;
+  private final int[] types; // Mask of the types in the block...
+  private final float[] hotPoints; // ... and the lowest and highest temperatures at which one of them changes phase.
+  private final float[] coldPoints;
+  private final float[] hotGain; // While counting: the gain and pull of the hot sources in the block, and the pull of its coolants.
+  private final float[] hotPull;
+  private final float[] coolPull;
+  private final float[] typeGain = new float[Interactions.TYPES]; // What one cell of each type adds to its block's gain,
+  private final float[] typePull = new float[Interactions.TYPES]; // ... to the sum of its pulls,
+  private final float[] typeConduct = new float[Interactions.TYPES]; // ... and to its conduct.
+  private final float[] typeHotGain = new float[Interactions.TYPES]; // The same for the sources hotter than AMBIENT (counted apart),
+  private final float[] typeHotPull = new float[Interactions.TYPES];
+  private final float[] typeCoolPull = new float[Interactions.TYPES]; // ... and the coolants' pulls.
+  private int bandChunks; // Rows of chunks per band.
+  private ForkJoinPool pool; // Null while the field steps on the calling thread.
+
+  /** @param scale Cells per block along each side: a power of two up to SimulationEngine.CHUNK_SIZE. */
+  public HeatField(SimulationEngine engine, int scale) {
+    if (scale < 1 || scale > CHUNK_SIZE || (scale & scale - 1) != 0)
+      throw new IllegalArgumentException("Scale " + scale + " is not a power of two up to " + CHUNK_SIZE);
+    this.engine = engine;
+    this.scale = scale;
+    shift = Integer.numberOfTrailingZeros(scale);
+    rows = (engine.getNumRows() + scale - 1) >> shift;
+    cols = (engine.getNumCols() + scale - 1) >> shift;
+    temperatures = new float[rows * cols];
+    next = new float[rows * cols];
+    gain = new float[rows * cols];
+    damping = new float[rows * cols];
+    conduct = new float[rows * cols];
+    types = new int[rows * cols];
+    hotPoints = new float[rows * cols];
+    coldPoints = new float[rows * cols];
+    hotGain = new float[rows * cols];
+    hotPull = new float[rows * cols];
+    coolPull = new float[rows * cols];
+    Arrays.fill(temperatures, AMBIENT);
+    for (int type = 0; type < Interactions.TYPES; type++) {
+      float pull = Interactions.heating(type) / (scale * scale);
+      if (Interactions.holdsHeat(type) && Interactions.temperature(type) > AMBIENT) {
+        typeHotPull[type] = pull;
+        typeHotGain[type] = pull * Interactions.temperature(type);
+      } else {
+        typePull[type] = pull;
+        typeGain[type] = pull * Interactions.temperature(type);
+      }
+      if (Interactions.isCoolant(type))
+        typeCoolPull[type] = pull;
+      typeConduct[type] = SPREAD * Interactions.conductivity(type) / (scale * scale);
+    }
+    bandChunks = (engine.getNumRows() + CHUNK_SIZE - 1) >> CHUNK_SHIFT; // One band.
+  }
+
+  /** Choose how many threads step the field.
+   *  @param threads 1 to step it on the calling thread (the default); more to step bands of rows on a pool of
+   *                 that many threads. Fields smaller than PARALLEL_BLOCKS blocks always run in one band.
+   */
+  public void setParallelism(int threads) {
+    if (pool != null)
+      pool.shutdown();
+    pool = null;
+    int chunkRows = (engine.getNumRows() + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+    bandChunks = chunkRows;
+    if (threads <= 1 || rows * cols < PARALLEL_BLOCKS)
+      return;
+    pool = new ForkJoinPool(threads);
+    int bands = Math.min(chunkRows, 4 * threads); // A few bands per thread, so the threads stay busy when bands differ in cost.
+    bandChunks = (chunkRows + bands - 1) / bands;
+  }
+
+  public int getParallelism() {
+    return pool == null ? 1 : pool.getParallelism();
+  }
+
+  public SimulationEngine getEngine() {
+    return engine;
+  }
+
+  public int getScale() {
+    return scale;
+  }
+
+  /** @return Temperature of the block that holds the cell. */
+  public float get(int row, int col) {
+    return temperatures[(row >> shift) * cols + (col >> shift)];
+  }
+
+  /** Set the whole board to AMBIENT. */
+  public void reset() {
+    Arrays.fill(temperatures, AMBIENT);
+  }
+
+  // For the engine's phase changes: the cell (row, col) is in block (row >> shift) * cols + (col >> shift)
+  float[] temperatures() {
+    return temperatures;
+  }
+
+  int[] types() {
+    return types;
+  }
+
+  float[] hotPoints() {
+    return hotPoints;
+  }
+
+  float[] coldPoints() {
+    return coldPoints;
+  }
+
+  int getShift() {
+    return shift;
+  }
+
+  int getCols() {
+    return cols;
+  }
+
+  // Temperature the block would settle at if its neighbours stayed as they are
+  float settled(int block) {
+    int row = block / cols, col = block - row * cols;
+    float[] t = temperatures;
+    float neighbours = t[row > 0 ? block - cols : block] + t[row < rows - 1 ? block + cols : block]
+                       + t[col > 0 ? block - 1 : block] + t[col < cols - 1 ? block + 1 : block];
+    return (gain[block] + conduct[block] * neighbours) / (1 / damping[block] - 1 + 4 * conduct[block]);
+  }
+
+  /** Let heat flow and the sources heat or cool their blocks for one step. */
+  public void step() {
+    int chunkRows = (engine.getNumRows() + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+    if (pool == null) {
+      band(0, chunkRows);
+    } else {
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (int first = 0; first < chunkRows; first += bandChunks) {
+        int from = first, to = Math.min(chunkRows, first + bandChunks);
+        tasks.add(ForkJoinTask.adapt(() -> band(from, to)));
+      }
+      pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+    float[] swap = temperatures;
+    temperatures = next;
+    next = swap;
+  }
+
+  // Steps the blocks of the chunk rows from..to (to excluded). Only reads other bands' temperatures, which don't change during the step.
+  private void band(int fromChunk, int toChunk) {
+    int chunkCols = engine.getChunkCols();
+    boolean[] stale = engine.staleChunks();
+    for (int chunkRow = fromChunk; chunkRow < toChunk; chunkRow++) {
+      for (int chunkCol = 0; chunkCol < chunkCols; chunkCol++) {
+        if (stale[chunkRow * chunkCols + chunkCol]) {
+          stale[chunkRow * chunkCols + chunkCol] = false;
+          count(chunkRow, chunkCol);
+        }
+      }
+    }
+    int blocks = CHUNK_SIZE >> shift;
+    for (int row = fromChunk * blocks; row < Math.min(rows, toChunk * blocks); row++)
+      spread(row);
+  }
+
+  // Counts what the blocks of the chunk hold again. The damping holds the sum of the pulls until the end, the hot
+  // sources are counted apart and added once their pull is capped by the coolants'.
+  private void count(int chunkRow, int chunkCol) {
+    int blocks = CHUNK_SIZE >> shift;
+    int top = chunkRow * blocks, left = chunkCol * blocks;
+    int bottom = Math.min(rows, top + blocks), right = Math.min(cols, left + blocks);
+    for (int row = top; row < bottom; row++) {
+      Arrays.fill(gain, row * cols + left, row * cols + right, AMBIENT_PULL * AMBIENT);
+      Arrays.fill(damping, row * cols + left, row * cols + right, AMBIENT_PULL);
+      Arrays.fill(conduct, row * cols + left, row * cols + right, 0);
+      Arrays.fill(types, row * cols + left, row * cols + right, 0);
+      Arrays.fill(hotGain, row * cols + left, row * cols + right, 0);
+      Arrays.fill(hotPull, row * cols + left, row * cols + right, 0);
+      Arrays.fill(coolPull, row * cols + left, row * cols + right, 0);
+    }
+    byte[] cells = engine.getCells();
+    int numCols = engine.getNumCols();
+    int lastRow = Math.min(engine.getNumRows(), (chunkRow + 1) << CHUNK_SHIFT);
+    int lastCol = Math.min(numCols, (chunkCol + 1) << CHUNK_SHIFT);
+    for (int row = chunkRow << CHUNK_SHIFT; row < lastRow; row++) {
+      for (int col = chunkCol << CHUNK_SHIFT; col < lastCol; col += scale) { // One block's share of the row at a time.
+        float blockGain = 0, blockPull = 0, blockConduct = 0, blockHotGain = 0, blockHotPull = 0, blockCoolPull = 0;
+        int mask = 0;
+        for (int index = row * numCols + col; index < row * numCols + Math.min(lastCol, col + scale); index++) {
+          int type = cells[index];
+          blockGain += typeGain[type];
+          blockPull += typePull[type];
+          blockConduct += typeConduct[type];
+          blockHotGain += typeHotGain[type];
+          blockHotPull += typeHotPull[type];
+          blockCoolPull += typeCoolPull[type];
+          mask |= 1 << type;
+        }
+        int block = (row >> shift) * cols + (col >> shift);
+        gain[block] += blockGain;
+        damping[block] += blockPull;
+        conduct[block] += blockConduct;
+        hotGain[block] += blockHotGain;
+        hotPull[block] += blockHotPull;
+        coolPull[block] += blockCoolPull;
+        types[block] |= mask;
+      }
+    }
+    for (int row = top; row < bottom; row++) {
+      for (int block = row * cols + left; block < row * cols + right; block++) {
+        float pull = hotPull[block], share = 1;
+        if (coolPull[block] > 0 && pull > coolPull[block]) {
+          share = coolPull[block] / pull;
+          pull = coolPull[block];
+        }
+        gain[block] += hotGain[block] * share;
+        damping[block] = 1 / (1 + damping[block] + pull);
+        float hot = Float.POSITIVE_INFINITY, cold = Float.NEGATIVE_INFINITY;
+        for (int mask = types[block]; mask != 0; mask &= mask - 1) {
+          int type = Integer.numberOfTrailingZeros(mask);
+          hot = Math.min(hot, Interactions.hotPoint(type));
+          cold = Math.max(cold, Interactions.coldPoint(type));
+        }
+        hotPoints[block] = hot;
+        coldPoints[block] = cold;
+      }
+    }
+  }
+
+  // One row of the stencil. The edges are insulated: a block missing a neighbour counts itself instead.
+  private void spread(int row) {
+    float[] t = temperatures, next = this.next, conduct = this.conduct, gain = this.gain, damping = this.damping;
+    int base = row * cols;
+    int above = row > 0 ? base - cols : base, below = row < rows - 1 ? base + cols : base;
+    if (cols == 1) {
+      next[base] = (t[base] + conduct[base] * (t[above] + t[below] - 2 * t[base]) + gain[base]) * damping[base];
+      return;
+    }
+    next[base] = (t[base] + conduct[base] * (t[base + 1] + t[above] + t[below] - 3 * t[base]) + gain[base]) * damping[base];
+    for (int col = 1; col < cols - 1; col++) {
+      float here = t[base + col];
+      next[base + col] = (here + conduct[base + col] * (t[base + col - 1] + t[base + col + 1] + t[above + col] + t[below + col] - 4 * here)
+                          + gain[base + col]) * damping[base + col];
+    }
+    int last = base + cols - 1;
+    next[last] = (t[last] + conduct[last] * (t[last - 1] + t[above + cols - 1] + t[below + cols - 1] - 3 * t[last])
+                  + gain[last]) * damping[last];
+  }
+
+  // Heat set free (or taken up, if negative) in the block that holds the cell, by a phase change
+  void add(int row, int col, float degrees) {
+    temperatures[(row >> shift) * cols + (col >> shift)] += degrees / (scale * scale);
+  }
+}
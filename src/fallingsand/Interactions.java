@@ -0,0 +1,205 @@
+package fallingsand;
+
+import java.util.*;
+
+import static fallingsand.SimulationEngine.*;
+
+/**
+ * Interactions.java: which particle types react with which, as one table.
+ * Every set of types is a bit mask (bit t set if type t is in the set), so a rule
+ * checks a neighbour with one lookup and nothing is allocated per step.
+ *
+ * @author Jun Park
+ */
+public final class Interactions {
+  public static final int TYPES = CLEAR + 1;
+
+  private static final int[] DISPLACES = new int[TYPES]; // Types the moving type can swap places with.
+  private static final int[] BURNS = new int[TYPES]; // Types the hot type (FIRE, LAVA) can burn.
+  private static final int[] BURN_DELAY = new int[TYPES]; // A burning try succeeds with a chance of 1 / BURN_DELAY.
+  private static final int RESTLESS = mask(LAVA, FIRE, ICE, STEAM, GAS, VIRUS, CLEAR); // Types that can change without a neighbour changing.
+  private static final int RISES = mask(STEAM, GAS); // Types that move upward.
+  private static final int INERT = mask(EMPTY, METAL, OBSIDIAN, GLASS, WOOD, LEAF, TNT); // Types with no rule of their own.
+  private static final int BLAST_PROOF = mask(EMPTY, METAL, OBSIDIAN); // Types an explosion leaves alone.
+  private static final int FLUNG = mask(SAND, WATER, OIL, LAVA, STONE); // Types an explosion throws out instead of destroying.
+  private static final int IGNITES = mask(GAS, OIL, LEAF, WOOD, VIRUS); // Types the heat around an explosion sets on fire.
+
+  // Heat (see HeatField)
+  private static final float[] TEMPERATURE = new float[TYPES]; // Temperature a source type pulls its block toward...
+  private static final float[] HEATING = new float[TYPES]; // ... by this share of the difference per step, for a block full of it.
+  private static final float[] CONDUCTIVITY = new float[TYPES]; // How fast heat flows through the type, from 0 to 1.
+  private static final float[] HOT_POINT = new float[TYPES]; // Above it the type turns into HOT_PHASE...
+  private static final int[] HOT_PHASE = new int[TYPES];
+  private static final float[] COLD_POINT = new float[TYPES]; // ... and below it into COLD_PHASE.
+  private static final int[] COLD_PHASE = new int[TYPES];
+  private static final int HOLDS_HEAT = mask(FIRE, LAVA, ICE); // Types that bring their own temperature along.
+  private static final int COOLANTS = mask(WATER); // Types that take up the heat of the hot sources in their block.
+  private static final float QUENCH_POINT = 400; // LAVA cooled below this turns into OBSIDIAN instead of STONE.
+  private static final float[] LATENT_HEAT = new float[TYPES]; // Heat held by the type; a change gives off the difference (see latentHeat()).
+
+  static {
+    DISPLACES[SAND] = mask(EMPTY, WATER, OIL, LAVA, STEAM, GAS);
+    DISPLACES[WATER] = mask(EMPTY, OIL, STEAM, GAS, FIRE);
+    DISPLACES[OIL] = mask(EMPTY);
+    DISPLACES[LAVA] = mask(EMPTY, STEAM, GAS, FIRE);
+    DISPLACES[STEAM] = mask(EMPTY, SAND, GAS, OIL, WATER, LAVA, FIRE);
+    DISPLACES[STONE] = mask(EMPTY, WATER, OIL, LAVA, GAS, FIRE, STEAM);
+
+    BURNS[FIRE] = mask(TNT, GAS, OIL, LEAF, WOOD, WATER, ICE, SAND, VIRUS);
+    BURNS[LAVA] = mask(TNT, GAS, OIL, LEAF, WOOD, SAND, ICE, VIRUS); // LAVA handles WATER itself (or sinks into it, with the heat field).
+
+    BURN_DELAY[TNT] = 3;
+    BURN_DELAY[GAS] = 3;
+    BURN_DELAY[OIL] = 7;
+    BURN_DELAY[VIRUS] = 15;
+    BURN_DELAY[LEAF] = 20;
+    BURN_DELAY[SAND] = 20; // Turns into GLASS.
+    BURN_DELAY[WOOD] = 30;
+    BURN_DELAY[WATER] = 100; // Evaporates into STEAM.
+    BURN_DELAY[ICE] = 200; // Melts into WATER and STEAM.
+
+    TEMPERATURE[FIRE] = 1000;
+    HEATING[FIRE] = 4;
+    TEMPERATURE[LAVA] = 1200;
+    HEATING[LAVA] = 4;
+    TEMPERATURE[ICE] = -50;
+    HEATING[ICE] = 4;
+    TEMPERATURE[WATER] = HeatField.AMBIENT; // A coolant: it caps the pull of LAVA in its block, so LAVA in WATER sets.
+    HEATING[WATER] = 4;
+
+    Arrays.fill(CONDUCTIVITY, 1);
+    CONDUCTIVITY[EMPTY] = 0.1f; // Air and gases hardly conduct, so LAVA stays hot in the open.
+    CONDUCTIVITY[STEAM] = 0.1f;
+    CONDUCTIVITY[GAS] = 0.1f;
+
+    Arrays.fill(HOT_POINT, Float.POSITIVE_INFINITY);
+    Arrays.fill(COLD_POINT, Float.NEGATIVE_INFINITY);
+    HOT_POINT[WATER] = 100; // Boils.
+    HOT_PHASE[WATER] = STEAM;
+    COLD_POINT[WATER] = -5; // Freezes.
+    COLD_PHASE[WATER] = ICE;
+    HOT_POINT[ICE] = 5; // Melts.
+    HOT_PHASE[ICE] = WATER;
+    COLD_POINT[STEAM] = 10; // Condenses, but only near something cold: it keeps rising through warm air.
+    COLD_PHASE[STEAM] = WATER;
+    HOT_POINT[SAND] = 500; // Melts into GLASS.
+    HOT_PHASE[SAND] = GLASS;
+    COLD_POINT[LAVA] = 700; // Sets.
+    COLD_PHASE[LAVA] = STONE;
+
+    LATENT_HEAT[ICE] = -80; // Melting and boiling take heat, freezing and condensing give it back.
+    LATENT_HEAT[STEAM] = 100;
+    LATENT_HEAT[LAVA] = 300; // Setting gives it off.
+  }
+
+  private Interactions() {
+  }
+
+  /** @return True if a moving particle of type mover can swap places with target. */
+  public static boolean canDisplace(int mover, int target) {
+    return (DISPLACES[mover] >>> target & 1) != 0;
+  }
+
+  /** @return True if a burner (FIRE or LAVA) next to target can burn it. */
+  public static boolean canBurn(int burner, int target) {
+    return (BURNS[burner] >>> target & 1) != 0;
+  }
+
+  /** @return How hard the type is to burn: each try succeeds with a chance of 1 / burnDelay. */
+  public static int burnDelay(int type) {
+    return BURN_DELAY[type];
+  }
+
+  /** @return True if the type can change, or change its neighbours, even when nothing around it changes.
+   *  A chunk that holds such a particle never falls asleep.
+   */
+  public static boolean isRestless(int type) {
+    return (RESTLESS >>> type & 1) != 0;
+  }
+
+  /** @return True if the type moves upward, so a sweep has to visit it top-down. */
+  public static boolean rises(int type) {
+    return (RISES >>> type & 1) != 0;
+  }
+
+  /** @return True if updating the type does nothing (it only changes when a neighbour acts on it). */
+  public static boolean isInert(int type) {
+    return (INERT >>> type & 1) != 0;
+  }
+
+  /** @return True if an explosion leaves the type alone. */
+  public static boolean isBlastProof(int type) {
+    return (BLAST_PROOF >>> type & 1) != 0;
+  }
+
+  /** @return True if an explosion throws the type out of its way instead of destroying it. */
+  public static boolean isFlung(int type) {
+    return (FLUNG >>> type & 1) != 0;
+  }
+
+  /** @return True if the heat around an explosion sets the type on fire. */
+  public static boolean ignites(int type) {
+    return (IGNITES >>> type & 1) != 0;
+  }
+
+  /** @return Temperature the type keeps its block of the heat field at (it only counts if heating() isn't 0). */
+  public static float temperature(int type) {
+    return TEMPERATURE[type];
+  }
+
+  /** @return Share of the difference to its temperature() the type closes per step, in a block full of it; 0 if it is no source. */
+  public static float heating(int type) {
+    return HEATING[type];
+  }
+
+  /** @return How fast heat flows through the type, from 0 (not at all) to 1. */
+  public static float conductivity(int type) {
+    return CONDUCTIVITY[type];
+  }
+
+  /** @return True if the type brings its own temperature: it only changes phase once its whole block would settle past its point. */
+  public static boolean holdsHeat(int type) {
+    return (HOLDS_HEAT >>> type & 1) != 0;
+  }
+
+  /** @return True if the type takes up the heat of the hot sources in its block: their pull is capped at its pull. */
+  public static boolean isCoolant(int type) {
+    return (COOLANTS >>> type & 1) != 0;
+  }
+
+  /** @return True if the type changes phase at some temperature. */
+  public static boolean changesPhase(int type) {
+    return HOT_POINT[type] != Float.POSITIVE_INFINITY || COLD_POINT[type] != Float.NEGATIVE_INFINITY;
+  }
+
+  /** @return Lowest temperature at which the type changes phase by heating, or infinity. */
+  public static float hotPoint(int type) {
+    return HOT_POINT[type];
+  }
+
+  /** @return Highest temperature at which the type changes phase by cooling, or minus infinity. */
+  public static float coldPoint(int type) {
+    return COLD_POINT[type];
+  }
+
+  /** @return What the type turns into at the temperature, or the type itself if it stays as it is. */
+  public static int phaseAt(int type, float temperature) {
+    if (temperature > HOT_POINT[type])
+      return HOT_PHASE[type];
+    if (temperature < COLD_POINT[type])
+      return type == LAVA && temperature < QUENCH_POINT ? OBSIDIAN : COLD_PHASE[type];
+    return type;
+  }
+
+  /** @return Heat (degrees times the cells of a block) given off when a particle changes from one type to another. */
+  public static float latentHeat(int from, int to) {
+    return LATENT_HEAT[from] - LATENT_HEAT[to];
+  }
+
+  private static int mask(int... types) {
+    int mask = 0;
+    for (int type : types)
+      mask |= 1 << type;
+    return mask;
+  }
+}
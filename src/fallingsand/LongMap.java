@@ -0,0 +1,88 @@
+package fallingsand;
+
+/**
+ * LongMap.java: a hash map from long keys to int values without any boxing,
+ * for tables with millions of entries (see SparseWorld). Open addressing with linear probing;
+ * removal shifts the following entries back, so there are no tombstones.
+ *
+ * @author Jun Park
+ */
+final class LongMap {
+  private long[] keys;
+  private int[] values;
+  private boolean[] used;
+  private int size;
+
+  LongMap() {
+    keys = new long[16];
+    values = new int[16];
+    used = new boolean[16];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** @return The value of the key, or missing if there is none. */
+  int get(long key, int missing) {
+    int mask = keys.length - 1;
+    for (int slot = hash(key) & mask; used[slot]; slot = (slot + 1) & mask)
+      if (keys[slot] == key)
+        return values[slot];
+    return missing;
+  }
+
+  void put(long key, int value) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    for (; used[slot]; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return;
+      }
+    }
+    used[slot] = true;
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size * 2 > keys.length) // Keep it at most half full, so probes stay short.
+      grow();
+  }
+
+  void remove(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (used[slot] && keys[slot] != key)
+      slot = (slot + 1) & mask;
+    if (!used[slot])
+      return;
+    size--;
+    // Shift back the following entries that probed past the hole.
+    for (int next = (slot + 1) & mask; used[next]; next = (next + 1) & mask) {
+      int home = hash(keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        keys[slot] = keys[next];
+        values[slot] = values[next];
+        slot = next;
+      }
+    }
+    used[slot] = false;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    boolean[] oldUsed = used;
+    keys = new long[oldKeys.length * 2];
+    values = new int[oldKeys.length * 2];
+    used = new boolean[oldKeys.length * 2];
+    size = 0;
+    for (int slot = 0; slot < oldKeys.length; slot++)
+      if (oldUsed[slot])
+        put(oldKeys[slot], oldValues[slot]);
+  }
+
+  private static int hash(long key) {
+    key *= 0x9E3779B97F4A7C15L; // Spread nearby chunk coordinates over the table.
+    return (int)(key ^ (key >>> 32));
+  }
+}
@@ -0,0 +1,88 @@
+package fallingsand;
+
+/**
+ * Palette.java: the color of every particle type, precomputed for every noise level.
+ * Types that shimmer (WATER, OIL, LAVA, FIRE, STEAM, GAS, VIRUS) get a random -20~20 offset;
+ * the others have the same color at every level, so drawing a cell is a single table lookup.
+ *
+ * @author Jun Park
+ */
+public class Palette {
+  public static final int NOISE_LEVELS = 41; // Color offsets -20 ~ 20.
+
+  private static final int[] COLORS = new int[Interactions.TYPES * NOISE_LEVELS]; // Packed RGB, indexed by type * NOISE_LEVELS + noise.
+  private static final boolean[] SHIMMERS = new boolean[Interactions.TYPES];
+
+  static {
+    for (int type = 0; type < Interactions.TYPES; type++) {
+      for (int noise = 0; noise < NOISE_LEVELS; noise++)
+        COLORS[type * NOISE_LEVELS + noise] = compute(type, noise - NOISE_LEVELS / 2);
+      SHIMMERS[type] = compute(type, -1) != compute(type, 1);
+    }
+  }
+
+  /** @param noise Noise level, 0 ~ NOISE_LEVELS - 1.
+   *  @return Packed opaque RGB of the type at that noise level.
+   */
+  public static int color(int type, int noise) {
+    return COLORS[type * NOISE_LEVELS + noise];
+  }
+
+  /** @return Color of the type without any offset. */
+  public static int baseColor(int type) {
+    return color(type, NOISE_LEVELS / 2);
+  }
+
+  /** @return True if the color of the type depends on the noise level. */
+  public static boolean shimmers(int type) {
+    return SHIMMERS[type];
+  }
+
+  // Colors that are changing its color randomly should be in the correct range. Since offsets can be -20 to 20, it should be at least 20 up to 235.
+  private static int compute(int type, int offset) {
+    switch (type) {
+      case SimulationEngine.EMPTY:
+      case SimulationEngine.CLEAR: // Only seen until the next step clears the board.
+        return rgb(10, 10, 10);
+      case SimulationEngine.SAND:
+        return rgb(255, 200, 0);
+      case SimulationEngine.WATER:
+        return rgb(30 + offset, 128 + offset, 255);
+      case SimulationEngine.OIL:
+        return rgb(40 + offset, 30 + offset, 5);
+      case SimulationEngine.LAVA:
+        return rgb(215 + offset, 50 + offset, 30 + offset);
+      case SimulationEngine.FIRE:
+        return rgb(215 + offset, 100 + offset, 0);
+      case SimulationEngine.ICE:
+        return rgb(170, 220, 255);
+      case SimulationEngine.STEAM:
+        return rgb(120 + offset, 210 + offset, 255);
+      case SimulationEngine.STONE:
+        return rgb(150, 150, 150);
+      case SimulationEngine.METAL:
+        return rgb(40, 40, 40);
+      case SimulationEngine.OBSIDIAN:
+        return rgb(110, 0, 180);
+      case SimulationEngine.GLASS:
+        return rgb(230, 230, 230);
+      case SimulationEngine.WOOD:
+        return rgb(120, 60, 0);
+      case SimulationEngine.LEAF:
+        return rgb(70, 160, 0);
+      case SimulationEngine.TNT:
+        return rgb(170, 0, 0);
+      case SimulationEngine.GAS:
+        return rgb(230 + offset, 160 + offset, 190 + offset);
+      case SimulationEngine.VIRUS:
+        return rgb(100 + offset, 225 + offset, 30 + offset);
+      default:
+        throw new IllegalArgumentException("No color for particle type " + type);
+    }
+  }
+
+  /** Pack a color into an opaque ARGB int. */
+  public static int rgb(int r, int g, int b) {
+    return 0xFF000000 | (r << 16) | (g << 8) | b;
+  }
+}
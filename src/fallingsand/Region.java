@@ -0,0 +1,50 @@
+package fallingsand;
+
+/**
+ * Region.java: a rectangle of cells cut out of a board by SimulationEngine.copy(), to paste() it
+ * somewhere else or into another engine.
+ *
+ * @author Jun Park
+ */
+public final class Region {
+  private final int height, width;
+  private final byte[] cells; // Row by row: cells[row * width + col].
+
+  /** @param cells The cells row by row, height * width of them, each a particle type below Interactions.TYPES.
+   *  The region keeps a copy, so later changes to the array don't reach it.
+   */
+  public Region(int height, int width, byte[] cells) {
+    this(height, width, cells.clone(), true);
+  }
+
+  // Keeps the array itself; SimulationEngine.copy() hands over a new one cut from a board, which needs no checking
+  Region(int height, int width, byte[] cells, boolean check) {
+    if (cells.length != height * width)
+      throw new IllegalArgumentException("Expected " + height * width + " cells, got " + cells.length);
+    if (check)
+      for (int i = 0; i < cells.length; i++)
+        if (cells[i] < 0 || cells[i] >= Interactions.TYPES)
+          throw new IllegalArgumentException("No particle type " + cells[i] + " at cell " + i);
+    this.height = height;
+    this.width = width;
+    this.cells = cells;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  /** @return The particle type at the given location within the region. */
+  public int get(int row, int col) {
+    return cells[row * width + col];
+  }
+
+  // The cells themselves, for SimulationEngine.paste()
+  byte[] cells() {
+    return cells;
+  }
+}
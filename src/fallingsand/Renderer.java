@@ -0,0 +1,134 @@
+package fallingsand;
+
+import java.awt.*;
+import java.util.*;
+
+/**
+ * Renderer.java: draws a SimulationEngine into a raster of packed ARGB ints, one pixel per cell.
+ * The raster is SandDisplay's pixels, so no Graphics or Color objects are made per cell.
+ * Colors come from the Palette; each cell keeps its noise level until its type changes,
+ * and the shimmering cells of a few tiles get new noise every frame.
+ *
+ * @author Jun Park
+ */
+public class Renderer {
+  private static final int SHIMMER_PERIOD = 8; // Every shimmering cell gets new noise once per 8 frames.
+
+  private SimulationEngine engine;
+  private int[] pixels;
+  private byte[] types; // Type of each cell when it was last drawn; -1 if it was never drawn.
+  private byte[] noise; // Noise level of each cell.
+  private int[] shimmering; // Number of shimmering cells in each tile, so tiles without any are skipped.
+  private int[] drawn; // Tiles drawn by the last render(); only the first drawnCount are valid.
+  private int drawnCount;
+  private int frame;
+  private Rng rng = new Rng(0x2545F491); // Noise only; kept apart from the engine's numbers so drawing never changes the simulation.
+
+  /** @param pixels Raster with one pixel per cell, row by row (numRows * numCols ints). */
+  public Renderer(SimulationEngine engine, int[] pixels) {
+    if (pixels.length != engine.getNumRows() * engine.getNumCols())
+      throw new IllegalArgumentException("Raster has " + pixels.length + " pixels, but the world has " + engine.getNumRows() * engine.getNumCols() + " cells");
+    this.engine = engine;
+    this.pixels = pixels;
+    types = new byte[pixels.length];
+    Arrays.fill(types, (byte)-1);
+    noise = new byte[pixels.length];
+    shimmering = new int[engine.getDirtyTiles().length];
+    drawn = new int[shimmering.length * 2]; // Every tile dirty, and some shimmering too.
+  }
+
+  /** Copies the cells of the dirty tiles into the raster, then clears the engine's dirty tiles.
+   *  Also gives the shimmering cells of every SHIMMER_PERIOD-th tile new noise.
+   *  @return Merged bounds of the redrawn cells (x = col, y = row), or null if nothing changed.
+   */
+  public Rectangle render() {
+    Rectangle bounds = null;
+    int count = engine.getDirtyCount();
+    int[] tiles = engine.getDirtyTiles();
+    int tileCols = engine.getTileCols();
+    drawnCount = 0;
+    for (int i = 0; i < count; i++) {
+      bounds = renderTile(tiles[i], tileCols, bounds);
+      drawn[drawnCount++] = tiles[i];
+    }
+    engine.clearDirty();
+    for (int tile = frame % SHIMMER_PERIOD; tile < shimmering.length; tile += SHIMMER_PERIOD) {
+      if (shimmering[tile] > 0) {
+        bounds = shimmerTile(tile, tileCols, bounds);
+        drawn[drawnCount++] = tile; // May be in the list twice.
+      }
+    }
+    frame++;
+    return bounds;
+  }
+
+  /** @return Tiles (tileRow * tileCols + tileCol) drawn by the last render(), maybe some twice;
+   *  only the first getDrawnCount() are valid.
+   */
+  public int[] getDrawnTiles() {
+    return drawn;
+  }
+
+  public int getDrawnCount() {
+    return drawnCount;
+  }
+
+  // Copies the cells of the tile into the raster
+  private Rectangle renderTile(int tile, int tileCols, Rectangle bounds) {
+    byte[] cells = engine.getCells();
+    int cols = engine.getNumCols();
+    int startRow = (tile / tileCols) << SimulationEngine.TILE_SHIFT;
+    int startCol = (tile % tileCols) << SimulationEngine.TILE_SHIFT;
+    int endRow = Math.min(startRow + SimulationEngine.TILE_SIZE, engine.getNumRows());
+    int endCol = Math.min(startCol + SimulationEngine.TILE_SIZE, cols);
+    for (int row = startRow; row < endRow; row++) {
+      int index = row * cols + startCol;
+      for (int col = startCol; col < endCol; col++, index++) {
+        int type = cells[index];
+        int old = types[index];
+        if (old != type) { // New particle here, so it gets new noise.
+          if (old >= 0 && Palette.shimmers(old))
+            shimmering[tile]--;
+          if (Palette.shimmers(type))
+            shimmering[tile]++;
+          types[index] = (byte)type;
+          noise[index] = nextNoise();
+        }
+        pixels[index] = Palette.color(type, noise[index]);
+      }
+    }
+    return union(bounds, startCol, startRow, endCol - startCol, endRow - startRow);
+  }
+
+  // Gives the shimmering cells of the tile new noise
+  private Rectangle shimmerTile(int tile, int tileCols, Rectangle bounds) {
+    int cols = engine.getNumCols();
+    int startRow = (tile / tileCols) << SimulationEngine.TILE_SHIFT;
+    int startCol = (tile % tileCols) << SimulationEngine.TILE_SHIFT;
+    int endRow = Math.min(startRow + SimulationEngine.TILE_SIZE, engine.getNumRows());
+    int endCol = Math.min(startCol + SimulationEngine.TILE_SIZE, cols);
+    for (int row = startRow; row < endRow; row++) {
+      int index = row * cols + startCol;
+      for (int col = startCol; col < endCol; col++, index++) {
+        int type = types[index]; // Same as the grid, since every changed cell was just drawn.
+        if (type >= 0 && Palette.shimmers(type)) {
+          noise[index] = nextNoise();
+          pixels[index] = Palette.color(type, noise[index]);
+        }
+      }
+    }
+    return union(bounds, startCol, startRow, endCol - startCol, endRow - startRow);
+  }
+
+  private static Rectangle union(Rectangle bounds, int x, int y, int width, int height) {
+    if (bounds == null)
+      return new Rectangle(x, y, width, height);
+    bounds.add(new Rectangle(x, y, width, height));
+    return bounds;
+  }
+
+  // Random noise level, 0 ~ Palette.NOISE_LEVELS - 1
+  private byte nextNoise() {
+    return (byte)rng.nextInt(Palette.NOISE_LEVELS);
+  }
+}
@@ -0,0 +1,48 @@
+package fallingsand;
+
+/**
+ * Rng.java: a small, fast, seedable random number generator (SplitMix64).
+ * Unlike Math.random() there is no shared state and no atomic update, so each engine
+ * (or each worker thread) owns its own generator. Not thread-safe: use split() to make
+ * an independent generator for another thread.
+ *
+ * @author Jun Park
+ */
+public class Rng {
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private final long seed;
+  private long state;
+
+  public Rng(long seed) {
+    this.seed = seed;
+    state = seed;
+  }
+
+  /** @return The seed this generator started from. */
+  public long getSeed() {
+    return seed;
+  }
+
+  public long nextLong() {
+    long z = (state += GOLDEN_GAMMA);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /** @return Random int in the range 0 ~ bound - 1. Integer only (multiply and shift, no division). */
+  public int nextInt(int bound) {
+    return (int)(((nextLong() >>> 32) * bound) >>> 32);
+  }
+
+  /** @return True with a chance of 1 / n. */
+  public boolean chance(int n) {
+    return nextInt(n) == 0;
+  }
+
+  /** @return A new generator whose numbers do not depend on this one's later numbers; for another thread. */
+  public Rng split() {
+    return new Rng(nextLong());
+  }
+}
@@ -0,0 +1,178 @@
+package fallingsand;
+
+import java.util.*;
+
+import static fallingsand.SimulationEngine.*;
+
+/**
+ * RunIndex.java: where the liquids are, one bit per cell and row, so the end of a run of one
+ * liquid along a row is found 64 cells at a time instead of one. A second level marks the words
+ * that are all one liquid, so a run across a wide tank skips 4096 cells per step.
+ * Kept up to date by every write of the serial worker (see SimulationEngine).
+ *
+ * @author Jun Park
+ */
+final class RunIndex {
+  private static final int[] SLOT = new int[Interactions.TYPES]; // Bitset of each type, or -1 if it isn't indexed.
+  private static final int SLOTS;
+
+  static {
+    Arrays.fill(SLOT, -1);
+    int slots = 0;
+    for (int type : new int[] {WATER, OIL, LAVA, STEAM}) // The types that flow sideways.
+      SLOT[type] = slots++;
+    SLOTS = slots;
+  }
+
+  private final int numCols;
+  private final int words; // Words per row.
+  private final int fullWords; // Summary words per row.
+  private final long[][] bits; // bits[slot][row * words + col / 64]: bit col % 64 set if the cell holds the type.
+  private final long[][] full; // full[slot][row * fullWords + word / 64]: bit word % 64 set if the word is all ones.
+
+  /** Index the given board. */
+  RunIndex(byte[] cells, int numRows, int numCols) {
+    this.numCols = numCols;
+    words = (numCols + 63) >> 6;
+    fullWords = (words + 63) >> 6;
+    bits = new long[SLOTS][numRows * words];
+    full = new long[SLOTS][numRows * fullWords];
+    for (int row = 0; row < numRows; row++)
+      reindex(cells, row, 0, numCols - 1);
+  }
+
+  /** The cells from..to (both included) of the row were all set to the type. Works a word at a time. */
+  void filled(int row, int from, int to, int type) {
+    int first = from >> 6, last = to >> 6;
+    for (int slot = 0; slot < SLOTS; slot++) {
+      boolean set = slot == SLOT[type];
+      for (int w = first; w <= last; w++) {
+        long mask = (w == first ? -1L << from : -1L) & (w == last ? -1L >>> 63 - (to & 63) : -1L); // The range's bits of the word.
+        int word = row * words + w;
+        bits[slot][word] = set ? bits[slot][word] | mask : bits[slot][word] & ~mask;
+        long bit = 1L << w;
+        if (bits[slot][word] == -1L)
+          full[slot][row * fullWords + (w >> 6)] |= bit;
+        else
+          full[slot][row * fullWords + (w >> 6)] &= ~bit;
+      }
+    }
+  }
+
+  /** Index the cells from..to (both included) of the row again, after they were written in bulk. */
+  void reindex(byte[] cells, int row, int from, int to) {
+    int first = from >> 6, last = to >> 6; // Whole words, so cells next to the range are indexed again too.
+    for (int slot = 0; slot < SLOTS; slot++)
+      Arrays.fill(bits[slot], row * words + first, row * words + last + 1, 0);
+    for (int col = first << 6, index = row * numCols + col; col < Math.min(numCols, last + 1 << 6); col++, index++) {
+      int slot = SLOT[cells[index]];
+      if (slot >= 0)
+        bits[slot][row * words + (col >> 6)] |= 1L << col;
+    }
+    for (int slot = 0; slot < SLOTS; slot++) {
+      for (int w = first; w <= last; w++) {
+        long bit = 1L << w;
+        if (bits[slot][row * words + w] == -1L)
+          full[slot][row * fullWords + (w >> 6)] |= bit;
+        else
+          full[slot][row * fullWords + (w >> 6)] &= ~bit;
+      }
+    }
+  }
+
+  /** The cell at index changed from oldType to newType. */
+  void changed(int index, int oldType, int newType) {
+    int row = index / numCols;
+    int col = index - row * numCols;
+    int word = row * words + (col >> 6);
+    long bit = 1L << col;
+    int slot = SLOT[oldType];
+    if (slot >= 0) {
+      if (bits[slot][word] == -1L)
+        full[slot][row * fullWords + (col >> 12)] &= ~(1L << (col >> 6));
+      bits[slot][word] &= ~bit;
+    }
+    slot = SLOT[newType];
+    if (slot >= 0) {
+      bits[slot][word] |= bit;
+      if (bits[slot][word] == -1L)
+        full[slot][row * fullWords + (col >> 12)] |= 1L << (col >> 6);
+    }
+  }
+
+  /** Forget everything (the board was cleared). */
+  void clear() {
+    for (int slot = 0; slot < SLOTS; slot++) {
+      Arrays.fill(bits[slot], 0);
+      Arrays.fill(full[slot], 0);
+    }
+  }
+
+  /** Walk along the row from col toward toCol (both included) while the cells hold the type.
+   * @return Column of the first cell that doesn't hold the type, or -1 if they all do.
+   */
+  int runEnd(int row, int col, int type, int toCol) {
+    long[] b = bits[SLOT[type]];
+    int base = row * words;
+    if (toCol <= col) { // Leftward
+      int c = col;
+      while (c >= toCol) {
+        int w = c >> 6;
+        long others = ~b[base + w] & (-1L >>> (63 - (c & 63))); // Other types at or left of c within the word.
+        if (others != 0) {
+          int found = (w << 6) + 63 - Long.numberOfLeadingZeros(others);
+          return found >= toCol ? found : -1;
+        }
+        w = lastNotFull(type, row, w - 1, toCol >> 6);
+        if (w < 0)
+          return -1;
+        c = (w << 6) + 63;
+      }
+    } else { // Rightward
+      int c = col;
+      while (c <= toCol) {
+        int w = c >> 6;
+        long others = ~b[base + w] & (-1L << (c & 63)); // Other types at or right of c within the word.
+        if (others != 0) {
+          int found = (w << 6) + Long.numberOfTrailingZeros(others); // Past the last column counts as other.
+          return found <= toCol ? found : -1;
+        }
+        w = nextNotFull(type, row, w + 1, toCol >> 6);
+        if (w < 0)
+          return -1;
+        c = w << 6;
+      }
+    }
+    return -1;
+  }
+
+  // Last word at or before w, and not before stop, that is not all the type; -1 if none
+  private int lastNotFull(int type, int row, int w, int stop) {
+    long[] f = full[SLOT[type]];
+    int base = row * fullWords;
+    while (w >= stop) {
+      long open = ~f[base + (w >> 6)] & (-1L >>> (63 - (w & 63)));
+      if (open != 0) {
+        int found = (w & ~63) + 63 - Long.numberOfLeadingZeros(open);
+        return found >= stop ? found : -1;
+      }
+      w = (w & ~63) - 1;
+    }
+    return -1;
+  }
+
+  // First word at or after w, and not after stop, that is not all the type; -1 if none
+  private int nextNotFull(int type, int row, int w, int stop) {
+    long[] f = full[SLOT[type]];
+    int base = row * fullWords;
+    while (w <= stop) {
+      long open = ~f[base + (w >> 6)] & (-1L << (w & 63));
+      if (open != 0) {
+        int found = (w & ~63) + Long.numberOfTrailingZeros(open);
+        return found <= stop ? found : -1;
+      }
+      w = (w & ~63) + 64;
+    }
+    return -1;
+  }
+}
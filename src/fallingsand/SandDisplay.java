@@ -0,0 +1,337 @@
+/*
+ * look at this file if you're curious about the graphics, but
+ * you will not need to modify or use anything in here to complete
+ * the project
+ */
+
+package fallingsand;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.swing.*;
+import javax.swing.event.*;
+
+public class SandDisplay extends JComponent implements MouseListener,
+        MouseMotionListener, MouseWheelListener, ActionListener, ChangeListener
+{
+  public static final int MAX_BRUSH = 20; //largest brush radius
+
+  //the simulation draws into pixels, and publish() copies them into one of three buffers:
+  //the simulation fills one, the EDT shows one, and the last published one waits in between,
+  //so neither side ever waits for the other and the screen never shows a half-drawn frame
+  private static final int FRESH = 4; //flag in ready: published, but not shown yet
+
+  private int[] pixels;
+  private BufferedImage[] buffers;
+  private int[][] bufferPixels;
+  private int tileCols;
+  private boolean[][] stale; //tiles of each buffer that changed since it was last filled (simulation thread only)
+  private int[][] staleTiles; //the stale tiles of each buffer; only the first staleCount are valid
+  private int[] staleCount;
+  private int back; //buffer the simulation fills next (simulation thread only)
+  private int front; //buffer on the screen (EDT only)
+  private final AtomicInteger ready = new AtomicInteger(1); //the buffer in between, plus FRESH
+  private int cellSize;
+  private JFrame frame;
+  private volatile int tool;
+  private int numRows;
+  private int numCols;
+  private final Queue<BrushEvent> input = new ConcurrentLinkedQueue<>(); //filled by the EDT, drained by the simulation
+  private final Queue<Point> pans = new ConcurrentLinkedQueue<>(); //arrow keys pressed, as chunks to move (x = col, y = row)
+  private volatile int brush;
+  private JButton[] buttons;
+  private JSlider slider;
+  private JLabel status;
+  private volatile long speed;
+  private SimulationMetrics metrics; //null unless counting repaints
+
+  public SandDisplay(String title, int numRows, int numCols, String[] buttonNames)
+  {
+    this(numRows, numCols);
+
+    frame = new JFrame(title);
+    frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.PAGE_AXIS));
+
+    JPanel topPanel = new JPanel();
+    topPanel.setLayout(new BoxLayout(topPanel, BoxLayout.LINE_AXIS));
+    frame.getContentPane().add(topPanel);
+
+    setPreferredSize(new Dimension(numCols * cellSize, numRows * cellSize));
+    addMouseListener(this);
+    addMouseMotionListener(this);
+    addMouseWheelListener(this);
+    setToolTipText("Scroll to change the brush size");
+    bindPan(KeyEvent.VK_UP, 0, -1);
+    bindPan(KeyEvent.VK_DOWN, 0, 1);
+    bindPan(KeyEvent.VK_LEFT, -1, 0);
+    bindPan(KeyEvent.VK_RIGHT, 1, 0);
+    topPanel.add(this);
+
+    JPanel buttonPanel = new JPanel();
+    buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.PAGE_AXIS));
+    topPanel.add(buttonPanel);
+
+    buttons = new JButton[buttonNames.length];
+
+    for (int i = 0; i < buttons.length; i++)
+    {
+      buttons[i] = new JButton(buttonNames[i]);
+      buttons[i].setActionCommand("" + i);
+      buttons[i].addActionListener(this);
+      buttonPanel.add(buttons[i]);
+    }
+
+    buttons[tool].setSelected(true);
+
+    slider = new JSlider(JSlider.HORIZONTAL, 0, 100, 50);
+    slider.addChangeListener(this);
+    slider.setMajorTickSpacing(1);
+    slider.setPaintTicks(true);
+    Hashtable<Integer, JLabel> labelTable = new Hashtable<Integer, JLabel>();
+    labelTable.put(0, new JLabel("Slow"));
+    labelTable.put(100, new JLabel("Fast"));
+    slider.setLabelTable(labelTable);
+    slider.setPaintLabels(true);
+
+    frame.getContentPane().add(slider);
+
+    status = new JLabel(" ");
+    status.setAlignmentX(Component.CENTER_ALIGNMENT);
+    frame.getContentPane().add(status);
+
+    frame.pack();
+    frame.setVisible(true);
+  }
+
+  //creates a display that only draws into its image, without a window
+  //(used by the benchmarks, which may run without a windowing system)
+  SandDisplay(int numRows, int numCols)
+  {
+    this.numRows = numRows;
+    this.numCols = numCols;
+    tool = 1;
+    brush = 0;
+    speed = computeSpeed(50);
+
+    //determine cell size
+    cellSize = Math.max(1, 600 / Math.max(numRows, numCols));
+    //one pixel per cell; paintComponent scales it up to cellSize
+    pixels = new int[numRows * numCols];
+    buffers = new BufferedImage[3];
+    bufferPixels = new int[3][];
+    tileCols = (numCols + SimulationEngine.TILE_SIZE - 1) >> SimulationEngine.TILE_SHIFT;
+    int tiles = tileCols * ((numRows + SimulationEngine.TILE_SIZE - 1) >> SimulationEngine.TILE_SHIFT);
+    stale = new boolean[3][tiles];
+    staleTiles = new int[3][tiles];
+    staleCount = new int[3];
+    for (int i = 0; i < 3; i++)
+    {
+      buffers[i] = new BufferedImage(numCols, numRows, BufferedImage.TYPE_INT_RGB);
+      bufferPixels[i] = ((DataBufferInt)buffers[i].getRaster().getDataBuffer()).getData();
+    }
+    back = 0;
+    front = 2;
+  }
+
+  public void paintComponent(Graphics g)
+  {
+    if ((ready.get() & FRESH) != 0)
+      front = ready.getAndSet(front) & ~FRESH; //take the newest frame, give back the one we showed
+    if (metrics != null)
+      metrics.repainted();
+    Graphics2D g2 = (Graphics2D)g;
+    g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    g2.drawImage(buffers[front], 0, 0, numCols * cellSize, numRows * cellSize, null);
+  }
+
+  //hands the pixels to the EDT as the next frame, and repaints the changed cells (x = col, y = row);
+  //tiles are the tiles (of SimulationEngine.TILE_SIZE cells) that changed, so only they are copied.
+  //never waits for the EDT
+  public void publish(Rectangle changed, int[] tiles, int count)
+  {
+    for (int i = 0; i < stale.length; i++)
+    {
+      for (int k = 0; k < count; k++)
+      {
+        if (!stale[i][tiles[k]])
+        {
+          stale[i][tiles[k]] = true;
+          staleTiles[i][staleCount[i]++] = tiles[k];
+        }
+      }
+    }
+    int[] target = bufferPixels[back];
+    for (int k = 0; k < staleCount[back]; k++)
+    {
+      int tile = staleTiles[back][k];
+      stale[back][tile] = false;
+      int startRow = (tile / tileCols) << SimulationEngine.TILE_SHIFT;
+      int startCol = (tile % tileCols) << SimulationEngine.TILE_SHIFT;
+      int width = Math.min(SimulationEngine.TILE_SIZE, numCols - startCol);
+      int endRow = Math.min(startRow + SimulationEngine.TILE_SIZE, numRows);
+      for (int row = startRow; row < endRow; row++)
+        System.arraycopy(pixels, row * numCols + startCol, target, row * numCols + startCol, width);
+    }
+    staleCount[back] = 0;
+    back = ready.getAndSet(back | FRESH) & ~FRESH;
+    repaintCells(changed);
+  }
+
+  public void pause(int milliseconds)
+  {
+    try
+    {
+      Thread.sleep(milliseconds);
+    }
+    catch(InterruptedException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+
+  //returns the oldest press, drag or release not handled yet, or null if there is none
+  //(never blocks, so the simulation can drain the queue every tick)
+  public BrushEvent pollInput()
+  {
+    return input.poll();
+  }
+
+  //returns the oldest arrow key move not handled yet, in chunks (x = col, y = row), or null if there is none
+  public Point pollPan()
+  {
+    return pans.poll();
+  }
+
+  //queues a move for the arrow key, wherever the focus is in the window (the buttons take it on a click)
+  private void bindPan(int key, int cols, int rows)
+  {
+    String name = "pan " + key;
+    getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), name);
+    getActionMap().put(name, new AbstractAction()
+    {
+      public void actionPerformed(ActionEvent e)
+      {
+        pans.offer(new Point(cols, rows));
+      }
+    });
+  }
+
+  public int getBrush()
+  {
+    return brush;
+  }
+
+  public int getTool()
+  {
+    return tool;
+  }
+
+  public void setColor(int row, int col, Color color)
+  {
+    pixels[row * numCols + col] = color.getRGB();
+  }
+
+  //repaints the given cells (x = col, y = row) on the screen
+  public void repaintCells(Rectangle cells)
+  {
+    repaint(new Rectangle(cells.x * cellSize, cells.y * cellSize, cells.width * cellSize, cells.height * cellSize));
+  }
+
+  //returns the pixels the simulation draws into, one packed RGB int per cell, row by row
+  //(writes show up after the next publish)
+  public int[] getPixels()
+  {
+    return pixels;
+  }
+
+  public void mouseClicked(MouseEvent e)
+  {
+  }
+
+  public void mousePressed(MouseEvent e)
+  {
+    queue(BrushEvent.PRESS, e);
+  }
+
+  public void mouseReleased(MouseEvent e)
+  {
+    queue(BrushEvent.RELEASE, e);
+  }
+
+  public void mouseEntered(MouseEvent e)
+  {
+  }
+
+  public void mouseExited(MouseEvent e)
+  {
+  }
+
+  public void mouseMoved(MouseEvent e)
+  {
+  }
+
+  public void mouseDragged(MouseEvent e)
+  {
+    queue(BrushEvent.DRAG, e);
+  }
+
+  //the wheel makes the brush bigger or smaller
+  public void mouseWheelMoved(MouseWheelEvent e)
+  {
+    brush = Math.max(0, Math.min(MAX_BRUSH, brush - e.getWheelRotation()));
+  }
+
+  //queues the event for the simulation; a drag off the board stays on its edge, so the stroke follows it there
+  private void queue(int kind, MouseEvent e)
+  {
+    int row = Math.max(0, Math.min(numRows - 1, e.getY() / cellSize));
+    int col = Math.max(0, Math.min(numCols - 1, e.getX() / cellSize));
+    input.offer(new BrushEvent(kind, row, col, tool, brush));
+  }
+
+  public void actionPerformed(ActionEvent e)
+  {
+    tool = Integer.parseInt(e.getActionCommand());
+    for (JButton button : buttons)
+      button.setSelected(false);
+    ((JButton)e.getSource()).setSelected(true);
+  }
+
+  public void stateChanged(ChangeEvent e)
+  {
+    speed = computeSpeed(slider.getValue());
+  }
+
+  //returns the number of steps per second the player asked for
+  public long getSpeed()
+  {
+    return speed;
+  }
+
+  //counts every repaint into the metrics
+  public void setMetrics(SimulationMetrics metrics)
+  {
+    this.metrics = metrics;
+  }
+
+  //shows a line of text under the slider (can be called from any thread)
+  public void setStatus(String text)
+  {
+    if (status != null)
+      SwingUtilities.invokeLater(() -> status.setText(text));
+  }
+
+  //returns speed based on sliderValue, as updates of every cell per second
+  //(so the slider means the same on any size of world)
+  //speed of 0 returns 10^1.5 updates per cell per second
+  //speed of 100 returns 10^4.5 updates per cell per second
+  private long computeSpeed(int sliderValue)
+  {
+    return (long)(Math.pow(10, 0.03 * sliderValue + 1.5) * numRows * numCols);
+  }
+}
\ No newline at end of file
@@ -0,0 +1,423 @@
+/**
+ * SandLab.java: an expandible falling-sand game.
+ * My custom particles and their are listed below.
+ *
+ * **See attached MAP.png**
+ *
+ * Empty:
+ *   Eraser...
+ *
+ * Sand:
+ *   Falling down in form of triangle.
+ *   Sink down when reacted with WATER, LAVA, STEAM, OIL, and GAS (or more).
+ *
+ * Water:
+ *   Falling down, check which side does not have water, and filled that equally as possible.
+ *
+ * Oil:
+ *   Same as WATER, but stay above the WATER.
+ *   Burnable object, and burn fast.
+ *
+ * Lava:
+ *   Works similar as Fire and WATER.
+ *   It will form STONE if WATER is under the LABA.
+ *   It will form OBSIDIAN if WATER is above the LABA.
+ *   With heat on: keeps its block at 1200 degrees, and sets into STONE below 700 (OBSIDIAN below 400).
+ *   It sinks into WATER, which takes up its heat.
+ *
+ * Fire:
+ *   Burn up things or spread fire at different speeds.Or disappear after a random time.
+ *   Just burn in different speed: FIRE, TNT, GAS, OIL, LEAF, WOOD
+ *   WATER: formed STEAM when it reacts with.
+ *   ICE: formed STEAM and WATER when it reacts with.
+ *   SAND: turn into glass.
+ *   With heat on: keeps its block at 1000 degrees; WATER boils at 100 and SAND melts into GLASS at 500.
+ *
+ * Ice:
+ *   Freeze WATER. When it reacts with STEAM, formed WATER.
+ *   With heat on: keeps its block at -50 degrees, freezes WATER below -5 and melts above 5.
+ *
+ * Steam:
+ *   Works similarly with WATER, but upside down.
+ *   It will be formed when WATER reacts with FIRE or LAVA.
+ *   Formed WATER when it reacts with ICE.
+ *   With heat on: condenses into WATER below 10 degrees.
+ *
+ * Stone:
+ *   Fall down straightly.
+ *
+ * Metal:
+ *   Just stay at position, not burnable.
+ *
+ * Obsidian:
+ *   Same as metal; It will formed when WATER is above the LABA.
+ *
+ * Glass:
+ *   Same as metal; It will be formed when SAND is heated.
+ *
+ * Wood:
+ *   Same as METAL, but burnable.
+ *   WOOD burns slower than LEAF.
+ *
+ * Leaf:
+ *   Same as METAL, but burnable.
+ *   LEAF burns faster than WOOD.
+ *
+ * TNT:
+ *   Explodes when it catches fire, with all the TNT touching it: the blast clears a circle (except METAL
+ *   and OBSIDIAN), throws SAND, WATER, OIL, LAVA and STONE out of it, and sets what burns around it on fire.
+ *   Other TNT the blast reaches explodes a tick later.
+ *
+ * Gas:
+ *   Spread randomly; Burn fast as TNT.
+ *
+ * Virus:
+ *   Randomly spread through the object, and randomly die.
+ *
+ * Clear:
+ *   Clear all.
+ *
+ * @author Jun Park
+ */
+
+package fallingsand;
+
+import java.awt.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+public class SandLab {
+  public static void main(String[] args) {
+    if (args.length > 0 && args[0].equals("--headless")) { // Run the rules without a window: --headless <width> <height> <steps> <scene> <seed>
+      HeadlessRunner.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args.length > 1 && args[0].equals("--replay")) { // Replay a recorded session without a window: --replay <file>
+      SessionReplay.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (option(args, "--record") != null && (option(args, "--load") != null || option(args, "--import") != null
+                                             || option(args, "--world") != null))
+      throw new IllegalArgumentException("--record starts from an empty board; it can't be used with --load, --import or --world");
+    SandLab lab = new SandLab(150, 100); // The window dimensions. Change if you want a larger/smaller area.
+    if (Arrays.asList(args).contains("--sweep")) // Update every particle once per sweep instead of random ones.
+      lab.engine.setTickMode(SimulationEngine.TickMode.SWEEP);
+    if (Arrays.asList(args).contains("--heat")) // Let temperature drive the phase changes (see HeatField).
+      lab.engine.setHeat(new HeatField(lab.engine, 4));
+    if (option(args, "--world") != null) // Play in a world that is kept in a file, moving around it with the arrow keys: --world <file>
+      lab.openWorld(new File(option(args, "--world")));
+    if (option(args, "--load") != null) // Start from a snapshot: --load <file>
+      lab.load(new File(option(args, "--load")));
+    if (option(args, "--import") != null) // Start from a picture, one pixel per cell: --import <png>
+      lab.importImage(new File(option(args, "--import")));
+    if (option(args, "--export") != null) // Save the board as a picture on exit: --export <png>
+      lab.exportOnExit(new File(option(args, "--export")));
+    if (option(args, "--capture") != null) // Save every n-th frame: --capture <directory or file.raw> [--capture-every <n>]
+      lab.capture(new File(option(args, "--capture")),
+                  option(args, "--capture-every") != null ? Integer.parseInt(option(args, "--capture-every")) : 1);
+    if (option(args, "--record") != null) // Record the session from an empty board: --record <file> [--sweep] [--heat]
+      lab.record(new File(option(args, "--record")));
+    if (option(args, "--autosave") != null) // Save a snapshot every 30 seconds and on exit: --autosave <file>
+      lab.autosave(new File(option(args, "--autosave")), 30_000);
+    if (option(args, "--metrics-log") != null) // Print the metrics every n seconds: --metrics-log <n>
+      lab.metrics.log(Integer.parseInt(option(args, "--metrics-log")));
+    lab.start();
+  }
+
+  // The argument after the given option, or null if it isn't there
+  private static String option(String[] args, String name) {
+    int k = Arrays.asList(args).indexOf(name);
+    return k >= 0 && k + 1 < args.length ? args[k + 1] : null;
+  }
+
+  // Add constants for particle types here
+  public static final int EMPTY = SimulationEngine.EMPTY;
+  public static final int SAND = SimulationEngine.SAND;
+  public static final int WATER = SimulationEngine.WATER;
+  public static final int OIL = SimulationEngine.OIL;
+  public static final int LAVA = SimulationEngine.LAVA;
+  public static final int FIRE = SimulationEngine.FIRE;
+  public static final int ICE = SimulationEngine.ICE;
+  public static final int STEAM = SimulationEngine.STEAM;
+  public static final int STONE = SimulationEngine.STONE;
+  public static final int METAL = SimulationEngine.METAL;
+  public static final int OBSIDIAN = SimulationEngine.OBSIDIAN;
+  public static final int GLASS = SimulationEngine.GLASS;
+  public static final int WOOD = SimulationEngine.WOOD;
+  public static final int LEAF = SimulationEngine.LEAF;
+  public static final int TNT = SimulationEngine.TNT;
+  public static final int GAS = SimulationEngine.GAS;
+  public static final int VIRUS = SimulationEngine.VIRUS;
+
+  public static final int CLEAR = SimulationEngine.CLEAR;
+
+  private static final long TICK_NANOS = 2_000_000; // The simulation runs 500 ticks per second.
+  private static final long FRAME_NANOS = 1_000_000_000 / 60; // At most 60 frames per second go to the display.
+  private static final long MAX_LAG = 100_000_000; // Further behind than this, the simulation gives up catching up.
+
+  private SimulationEngine engine;
+  private SandDisplay display;
+  private Renderer renderer;
+  private SessionRecorder recorder; // Null unless the session is being recorded.
+  private Autosave autosave; // Null unless autosaving.
+  private WorldWindow world; // Null unless playing in a world file.
+  private FrameCapture capture; // Null unless capturing frames.
+  private AdaptiveStepper stepper = new AdaptiveStepper(TICK_NANOS, FRAME_NANOS);
+  private SimulationMetrics metrics; // Null for the benchmarks.
+  private boolean penDown; // The mouse button is held on the board.
+  private int penRow, penCol; // Where the mouse was last seen.
+  private BrushEvent pen; // The last event, for its tool and brush.
+  private volatile boolean running = true; // Cleared on exit to stop run().
+  private final ArrayList<Runnable> onExit = new ArrayList<>(); // Saves to do once the simulation has stopped, in order.
+
+  public SandLab(int numRows, int numCols) {
+    engine = new SimulationEngine(numRows, numCols); // Initialize the board.
+    String[] names;
+    names = new String[18];
+    names[EMPTY] = "Empty";
+    names[SAND] = "Sand";
+    names[WATER] = "Water";
+    names[OIL] = "Oil";
+    names[LAVA] = "Lava";
+    names[FIRE] = "Fire";
+    names[ICE] = "Ice";
+    names[STEAM] = "Steam";
+    names[STONE] = "Stone";
+    names[METAL] = "Metal";
+    names[OBSIDIAN] = "Obsidian";
+    names[GLASS] = "Glass";
+    names[WOOD] = "Wood";
+    names[LEAF] = "Leaf";
+    names[TNT] = "TNT";
+    names[GAS] = "Gas";
+    names[VIRUS] = "Virus";
+    names[CLEAR] = "Clear";
+    display = new SandDisplay("Falling Sand - Jun Park", numRows, numCols, names);
+    renderer = new Renderer(engine, display.getPixels());
+    metrics = new SimulationMetrics(engine); // Shown over JMX, e.g. in JConsole.
+    metrics.register();
+    engine.setMetrics(metrics);
+    display.setMetrics(metrics);
+  }
+
+  // Frontend for an existing engine and display (used by the benchmarks).
+  SandLab(SimulationEngine engine, SandDisplay display) {
+    this.engine = engine;
+    this.display = display;
+    renderer = new Renderer(engine, display.getPixels());
+  }
+
+  // Paints what the mouse did since the last tick: a line from the last position to each new one, so
+  // fast strokes have no gaps. While the button is held still the brush keeps painting, like it always did.
+  private void paintInput() {
+    boolean painted = false;
+    BrushEvent event;
+    while ((event = display.pollInput()) != null) {
+      if (metrics != null)
+        metrics.mouseEvent();
+      if (event.kind == BrushEvent.PRESS) {
+        stroke(event.row, event.col, event);
+        painted = true;
+      } else if (penDown) {
+        if (event.tool != CLEAR) // Clears once per click, not along the drag.
+          stroke(penRow, penCol, event);
+        painted = true;
+      }
+      penDown = event.kind != BrushEvent.RELEASE;
+      penRow = event.row;
+      penCol = event.col;
+      pen = event;
+    }
+    if (penDown && !painted && pen.tool != CLEAR)
+      stroke(penRow, penCol, pen);
+  }
+
+  // Paints a line with the event's tool and brush, from (fromRow, fromCol) to the event (CLEAR empties the board)
+  private void stroke(int fromRow, int fromCol, BrushEvent event) {
+    if (recorder != null)
+      recorder.stroked(engine.getStepCount(), fromRow, fromCol, event.row, event.col, event.tool, event.brush);
+    engine.stroke(fromRow, fromCol, event.row, event.col, event.tool, event.brush);
+  }
+
+  // Runs the simulation on its own thread (Swing paints on the EDT). When the program exits, the
+  // simulation is stopped first, then the saves run in the order they were asked for, so they see the final board.
+  public void start() {
+    Thread simulation = new Thread(this::run, "simulation");
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      running = false;
+      try {
+        simulation.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      for (Runnable save : onExit)
+        save.run();
+      if (metrics != null)
+        metrics.close();
+    }));
+    simulation.start();
+  }
+
+  // Records every brush stroke and speed change from now on, until the program exits
+  public void record(File file) {
+    recorder = new SessionRecorder(file, engine);
+    SessionRecorder r = recorder;
+    onExit.add(() -> r.close(engine.getStepCount()));
+  }
+
+  // Replaces the board with a snapshot
+  public void load(File file) {
+    try {
+      Snapshot.load(engine, file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Replaces the board with a picture, matching every pixel to the particle of the nearest color
+  public void importImage(File file) {
+    try {
+      WorldImage.load(engine, file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Saves the board as a picture when the program exits
+  public void exportOnExit(File file) {
+    onExit.add(() -> {
+      try {
+        WorldImage.save(engine, file);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    });
+  }
+
+  // Saves one frame out of every into a directory of PNGs or a raw stream, on background threads
+  public void capture(File target, int every) {
+    try {
+      capture = new FrameCapture(target, engine, every, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    FrameCapture c = capture;
+    onExit.add(() -> {
+      try {
+        c.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    });
+  }
+
+  // Saves a snapshot in the background every intervalMillis, and once more when the program exits
+  public void autosave(File file, long intervalMillis) {
+    autosave = new Autosave(file, intervalMillis);
+    Autosave a = autosave;
+    onExit.add(() -> {
+      a.close(); // Let a running save finish first.
+      try {
+        Snapshot.save(engine, file);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    });
+  }
+
+  // Shows the top left corner of the world kept in the file, and writes it back when the program exits.
+  // The arrow keys move the window around the world, a chunk per press.
+  public void openWorld(File file) {
+    try {
+      world = new WorldWindow(new SparseWorld(file, 4096), engine, 0, 0);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    WorldWindow w = world;
+    onExit.add(() -> {
+      try {
+        w.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    });
+  }
+
+  // Moves the world window as the arrow keys asked since the last tick
+  private void pan() {
+    Point move;
+    while ((move = display.pollPan()) != null) {
+      try {
+        world.moveBy(move.y, move.x);
+        display.setStatus(String.format("World at row %,d, column %,d", world.getTop(), world.getLeft()));
+      } catch (IllegalArgumentException e) {
+        display.setStatus("The edge of the world"); // The window stays where it was.
+      }
+    }
+  }
+
+  // Copies the changed elements of grid into the display, and publishes them as the next frame
+  public void updateDisplay() {
+    Rectangle dirty = renderer.render();
+    if (dirty != null)
+      display.publish(dirty, renderer.getDrawnTiles(), renderer.getDrawnCount());
+  }
+
+  public SimulationEngine getEngine() {
+    return engine;
+  }
+
+  // Runs the simulation on the calling thread with a fixed timestep: one tick every TICK_NANOS,
+  // however long painting takes. Each tick runs as many of the getSpeed() steps per second as the
+  // AdaptiveStepper says fit. A frame is rendered and published at most every FRAME_NANOS.
+  // Returns once the program exits.
+  public void run() {
+    long speed = -1;
+    long nextTick = System.nanoTime();
+    long nextFrame = nextTick;
+    while (running) {
+      long now = System.nanoTime();
+      if (now < nextTick) {
+        LockSupport.parkNanos(nextTick - now); // Ahead of the clock.
+        continue;
+      }
+      if (now - nextTick > MAX_LAG)
+        nextTick = now; // Too slow for the speed; skip the backlog instead of falling further behind.
+      nextTick += TICK_NANOS;
+
+      if (recorder != null && display.getSpeed() != speed)
+        recorder.speedChanged(engine.getStepCount(), display.getSpeed());
+      speed = display.getSpeed();
+      long steps = stepper.stepsFor(speed);
+      long start = System.nanoTime();
+      engine.tick(steps);
+      stepper.ranSteps(steps, System.nanoTime() - start);
+      paintInput();
+      if (world != null)
+        pan();
+
+      if (now >= nextFrame) {
+        nextFrame = Math.max(nextFrame + FRAME_NANOS, now);
+        if (recorder != null)
+          recorder.flush();
+        if (autosave != null)
+          autosave.poll(engine);
+        long drawStart = System.nanoTime();
+        updateDisplay();
+        long drawn = System.nanoTime() - drawStart;
+        stepper.rendered(drawn);
+        if (metrics != null)
+          metrics.rendered(drawn);
+        if (capture != null)
+          capture.capture(engine);
+        if (stepper.poll(now)) {
+          double cells = (double)engine.getNumRows() * engine.getNumCols();
+          display.setStatus(String.format("%,.0f of %,d steps/s (%.0f updates per cell), %.0f frames/s",
+                                          stepper.getStepsPerSecond(), speed, stepper.getStepsPerSecond() / cells,
+                                          stepper.getFramesPerSecond()));
+        }
+      }
+    }
+  }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package fallingsand;
+
+import java.util.*;
+
+/**
+ * Scenes.java: ready-made fills for a SimulationEngine.
+ * Used by the headless runner so runs are repeatable without painting by hand.
+ *
+ * @author Jun Park
+ */
+public class Scenes {
+  public static final String[] NAMES = {"mixed", "water", "sand", "forest"};
+
+  /** Fill the engine with the named scene.
+   * @param seed Seed for the random parts of the scene, so the same seed always gives the same world.
+   */
+  public static void fill(SimulationEngine engine, String name, long seed) {
+    switch (name) {
+      case "mixed":
+        mixed(engine, seed);
+        break;
+      case "water":
+        waterTank(engine);
+        break;
+      case "sand":
+        sandPile(engine);
+        break;
+      case "forest":
+        forest(engine, seed);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown scene: " + name);
+    }
+  }
+
+  /** A METAL tank filled with WATER up to the top row. */
+  public static void waterTank(SimulationEngine engine) {
+    int rows = engine.getNumRows();
+    int cols = engine.getNumCols();
+    engine.fillRect(0, 0, rows, cols, SimulationEngine.METAL); // Walls of the tank.
+    engine.fillRect(0, 1, rows - 1, cols - 2, SimulationEngine.WATER);
+  }
+
+  /** SAND filling the upper half of the world, so it falls down and forms a pile. */
+  public static void sandPile(SimulationEngine engine) {
+    int rows = engine.getNumRows();
+    int cols = engine.getNumCols();
+    engine.fillRect(0, cols / 4, rows / 2, cols - cols / 4 * 2, SimulationEngine.SAND);
+  }
+
+  /** A forest of WOOD trunks and LEAF crowns with FIRE at the bottom. */
+  public static void forest(SimulationEngine engine, long seed) {
+    Random random = new Random(seed);
+    int rows = engine.getNumRows();
+    int cols = engine.getNumCols();
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        if (row > rows * 2 / 3 || col % 8 == 0)
+          engine.set(row, col, SimulationEngine.WOOD); // Ground and trunks.
+        else if (row > rows / 3 && random.nextInt(4) != 0)
+          engine.set(row, col, SimulationEngine.LEAF);
+      }
+    }
+    for (int col = 0; col < cols; col += 16)
+      engine.set(rows - 1, col, SimulationEngine.FIRE); // Light it up.
+  }
+
+  /** A bit of everything: SAND and WATER falling onto a floor, OIL, LAVA, ICE and a burning forest. */
+  public static void mixed(SimulationEngine engine, long seed) {
+    Random random = new Random(seed);
+    int[] types = {SimulationEngine.SAND, SimulationEngine.WATER, SimulationEngine.OIL, SimulationEngine.LAVA,
+                   SimulationEngine.ICE, SimulationEngine.WOOD, SimulationEngine.LEAF, SimulationEngine.FIRE,
+                   SimulationEngine.GAS, SimulationEngine.STONE};
+    int rows = engine.getNumRows();
+    int cols = engine.getNumCols();
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        if (row == rows - 1)
+          engine.set(row, col, SimulationEngine.METAL); // Floor.
+        else if (random.nextInt(3) == 0) // About a third of the world is filled.
+          engine.set(row, col, types[random.nextInt(types.length)]);
+      }
+    }
+  }
+}
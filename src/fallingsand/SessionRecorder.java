@@ -0,0 +1,130 @@
+package fallingsand;
+
+import java.io.*;
+
+/**
+ * SessionRecorder.java: records a session so it can be replayed bit for bit (see SessionReplay).
+ * The log holds the engine's seed, size, tick mode and heat scale, then every brush stroke and speed change stamped with
+ * the engine's step count when it happened. Brush strokes are kept as the lines they paint (see SimulationEngine.stroke());
+ * a brush held still repaints the end of the last stroke every tick, which is logged as a HOLD of 2 or 3 bytes.
+ * Numbers are written as variable-length ints. Events after close() are ignored, so a shutdown hook can
+ * close the log while the game is still running. Logs of version 1 and 2 hold single clicks, which SessionReplay still reads.
+ *
+ * @author Jun Park
+ */
+public class SessionRecorder implements Closeable {
+  static final int MAGIC = 0x46535243; // "FSRC"
+  static final int VERSION = 5; // 2 added the tick mode, 3 brush strokes, 4 the heat field, 5 holds.
+
+  // Event kinds
+  static final int END = 0;
+  static final int CLICK = 1; // Only written up to version 2.
+  static final int SPEED = 2;
+  static final int STROKE = 3;
+  static final int HOLD = 4; // The last stroke's end painted again with its tool and brush.
+
+  private DataOutputStream out;
+  private long lastStep;
+  private int lastRow = -1, lastCol = -1, lastTool = -1, lastRadius = -1; // End of the last stroke, for holds.
+  private boolean closed;
+
+  /** Start a log for an engine that has not run yet. */
+  public SessionRecorder(File file, SimulationEngine engine) {
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(engine.getNumRows());
+      out.writeInt(engine.getNumCols());
+      out.writeLong(engine.getRng().getSeed());
+      out.writeByte(engine.getTickMode().ordinal());
+      out.writeByte(engine.getHeat() == null ? 0 : engine.getHeat().getScale()); // 0: no heat.
+      lastStep = engine.getStepCount();
+      writeVarLong(lastStep);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** The user painted a line with the tool and brush radius after the given number of steps. A brush that
+   *  didn't move from the end of the last stroke, with the same tool and radius, is logged as a HOLD.
+   */
+  public synchronized void stroked(long step, int fromRow, int fromCol, int toRow, int toCol, int tool, int radius) {
+    if (closed)
+      return;
+    try {
+      if (fromRow == toRow && fromCol == toCol && toRow == lastRow && toCol == lastCol && tool == lastTool && radius == lastRadius) {
+        writeEvent(HOLD, step);
+        return;
+      }
+      lastRow = toRow;
+      lastCol = toCol;
+      lastTool = tool;
+      lastRadius = radius;
+      writeEvent(STROKE, step);
+      writeVarLong(fromRow);
+      writeVarLong(fromCol);
+      writeVarLong(toRow);
+      writeVarLong(toCol);
+      out.writeByte(tool);
+      writeVarLong(radius);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** The speed the player asked for (steps per second) changed. */
+  public synchronized void speedChanged(long step, long speed) {
+    if (closed)
+      return;
+    try {
+      writeEvent(SPEED, step);
+      writeVarLong(speed);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Push the buffered events to the file, so a crash loses at most one frame. */
+  public synchronized void flush() {
+    if (closed)
+      return;
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** End the log after the given number of steps. */
+  public synchronized void close(long step) {
+    if (closed)
+      return;
+    closed = true;
+    try {
+      writeEvent(END, step);
+      out.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public void close() {
+    close(lastStep);
+  }
+
+  private void writeEvent(int kind, long step) throws IOException {
+    out.writeByte(kind);
+    writeVarLong(step - lastStep); // Steps since the last event.
+    lastStep = step;
+  }
+
+  // 7 bits per byte, high bit set if more bytes follow
+  private void writeVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int)(value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int)value);
+  }
+}
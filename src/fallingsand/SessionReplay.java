@@ -0,0 +1,121 @@
+package fallingsand;
+
+import java.io.*;
+
+/**
+ * SessionReplay.java: replays a log made by SessionRecorder without any window, at full speed.
+ * Every replay of the same log gives the same grid, so the checksum it prints can be compared
+ * between engine versions, and recorded sessions can be used as benchmark workloads.
+ * Usage: java fallingsand.SandLab --replay <file>
+ *
+ * @author Jun Park
+ */
+public class SessionReplay {
+  private DataInputStream in;
+  private SimulationEngine engine;
+  private int clicks;
+  private int strokes;
+  private int holds;
+  private int lastRow, lastCol, lastTool, lastRadius; // End of the last stroke, painted again by a HOLD.
+  private int speedChanges;
+
+  public SessionReplay(File file) {
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != SessionRecorder.MAGIC)
+        throw new IOException(file + " is not a session log");
+      int version = in.readInt();
+      if (version < 1 || version > SessionRecorder.VERSION)
+        throw new IOException(file + " has version " + version + ", expected up to " + SessionRecorder.VERSION);
+      int numRows = in.readInt();
+      int numCols = in.readInt();
+      engine = new SimulationEngine(numRows, numCols, in.readLong());
+      if (version >= 2)
+        engine.setTickMode(SimulationEngine.TickMode.values()[in.readUnsignedByte()]);
+      int heatScale = version >= 4 ? in.readUnsignedByte() : 0;
+      if (heatScale != 0)
+        engine.setHeat(new HeatField(engine, heatScale));
+      engine.tick(readVarLong()); // Steps before the recording started.
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static void main(String[] args) {
+    SessionReplay replay = new SessionReplay(new File(args[0]));
+    long start = System.nanoTime();
+    SimulationEngine engine = replay.run();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("Replayed %,d steps, %d clicks, %d strokes, %d holds and %d speed changes on a %dx%d world in %.3f s: %,.0f steps/s%n",
+                      engine.getStepCount(), replay.clicks, replay.strokes, replay.holds, replay.speedChanges, engine.getNumCols(), engine.getNumRows(),
+                      seconds, engine.getStepCount() / Math.max(seconds, 1e-9));
+    System.out.printf("Checksum: %016x%n", engine.checksum());
+  }
+
+  /** Run the whole log. A log that was cut off (e.g. the window was killed) ends at its last complete event.
+   * @return The engine in its final state.
+   */
+  public SimulationEngine run() {
+    try (DataInputStream in = this.in) {
+      while (true) {
+        int kind = in.read();
+        if (kind == -1 || kind == SessionRecorder.END) {
+          if (kind == SessionRecorder.END)
+            engine.tick(readVarLong());
+          return engine;
+        }
+        engine.tick(readVarLong());
+        switch (kind) {
+          case SessionRecorder.CLICK: {
+            int row = (int)readVarLong();
+            int col = (int)readVarLong();
+            engine.set(row, col, in.readUnsignedByte());
+            clicks++;
+            break;
+          }
+          case SessionRecorder.STROKE: {
+            int fromRow = (int)readVarLong();
+            int fromCol = (int)readVarLong();
+            int toRow = (int)readVarLong();
+            int toCol = (int)readVarLong();
+            int tool = in.readUnsignedByte();
+            int radius = (int)readVarLong();
+            engine.stroke(fromRow, fromCol, toRow, toCol, tool, radius);
+            lastRow = toRow;
+            lastCol = toCol;
+            lastTool = tool;
+            lastRadius = radius;
+            strokes++;
+            break;
+          }
+          case SessionRecorder.HOLD: {
+            engine.stroke(lastRow, lastCol, lastRow, lastCol, lastTool, lastRadius);
+            holds++;
+            break;
+          }
+          case SessionRecorder.SPEED: {
+            readVarLong(); // Only matters for the window; the steps between events are already in the log.
+            speedChanges++;
+            break;
+          }
+          default:
+            throw new IOException("Unknown event " + kind);
+        }
+      }
+    } catch (EOFException e) {
+      return engine; // Cut off in the middle of an event.
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private long readVarLong() throws IOException {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+  }
+}
@@ -0,0 +1,1657 @@
+package fallingsand;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * SimulationEngine.java: the falling-sand world without any windowing.
+ * Holds the grid and the particle rules, so it can run on a server, in a batch job,
+ * or under a profiler. SandLab and SandDisplay are just one frontend of it.
+ *
+ * @author Jun Park
+ */
+public class SimulationEngine {
+  // Particle types
+  public static final int EMPTY = 0;
+  public static final int SAND = 1;
+  public static final int WATER = 2;
+  public static final int OIL = 3;
+  public static final int LAVA = 4;
+  public static final int FIRE = 5;
+  public static final int ICE = 6;
+  public static final int STEAM = 7;
+  public static final int STONE = 8;
+  public static final int METAL = 9;
+  public static final int OBSIDIAN = 10;
+  public static final int GLASS = 11;
+  public static final int WOOD = 12;
+  public static final int LEAF = 13;
+  public static final int TNT = 14;
+  public static final int GAS = 15;
+  public static final int VIRUS = 16;
+
+  public static final int CLEAR = 17;
+
+  // Name of each type, for files and metrics
+  private static final String[] TYPE_NAMES = {
+    "EMPTY", "SAND", "WATER", "OIL", "LAVA", "FIRE", "ICE", "STEAM", "STONE", "METAL",
+    "OBSIDIAN", "GLASS", "WOOD", "LEAF", "TNT", "GAS", "VIRUS", "CLEAR"
+  };
+
+  // The world is split into TILE_SIZE * TILE_SIZE tiles for dirty tracking.
+  public static final int TILE_SHIFT = 4;
+  public static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+  // ... and into CHUNK_SIZE * CHUNK_SIZE chunks that fall asleep when nothing happens in them.
+  public static final int CHUNK_SHIFT = 5;
+  public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+  /** How tick() runs the rules. */
+  public enum TickMode {
+    STOCHASTIC, // One random particle per step (the original game).
+    SWEEP // Every particle once per numCells steps, in a fixed order; see sweep().
+  }
+  private static final long TICK_BLOCK = 4096; // tick() recounts the awake cells, and lit TNT goes off, every TICK_BLOCK steps.
+  private static final int TIME_SAMPLE = 64; // With metrics, one update in TIME_SAMPLE is timed.
+  private static final int TYPES = Interactions.TYPES;
+  private static final int SWEEP_FALLS = 1, SWEEP_RISES = 2; // Bits of sweepWork.
+  private static final int FALLING_WORK = workMask(false), RISING_WORK = workMask(true); // Types each pass of a sweep updates.
+  private static final int PHASE_TYPES = phaseMask(false); // Types the heat field can change...
+  private static final int HOLDS_HEAT_TYPES = phaseMask(true); // ... and the ones of them that bring their own heat.
+  private static final int PHASE_CHANCE = 4; // A particle past its phase change temperature changes with a chance of 1 / PHASE_CHANCE per heat step.
+
+  // Circles, as the half width of each row at each distance from the center row, for the brush and the blasts
+  private static final int[][] CIRCLES = new int[33][];
+  private static final int BLAST_RADIUS = 6; // An explosion clears the cells this close to the TNT...
+  private static final int HEAT_RADIUS = 9; // ... and sets on fire, and throws particles out to, the cells this close.
+  private static final int FIRE_CHANCE = 8; // One cleared cell in FIRE_CHANCE is left burning.
+  private static final int[] RING_ROWS, RING_COLS; // Offsets in the heat circle but not the blast circle, where flung particles land.
+
+  static {
+    for (int radius = 0; radius < CIRCLES.length; radius++) {
+      CIRCLES[radius] = new int[radius + 1];
+      for (int dr = 0; dr <= radius; dr++)
+        CIRCLES[radius][dr] = (int)Math.sqrt(radius * radius + radius - dr * dr); // r * r + r makes small circles rounder.
+    }
+    int[] heat = CIRCLES[HEAT_RADIUS], blast = CIRCLES[BLAST_RADIUS];
+    int ring = 0;
+    for (int dr = -HEAT_RADIUS; dr <= HEAT_RADIUS; dr++)
+      for (int dc = -heat[Math.abs(dr)]; dc <= heat[Math.abs(dr)]; dc++)
+        if (Math.abs(dr) > BLAST_RADIUS || Math.abs(dc) > blast[Math.abs(dr)])
+          ring++;
+    RING_ROWS = new int[ring];
+    RING_COLS = new int[ring];
+    ring = 0;
+    for (int dr = -HEAT_RADIUS; dr <= HEAT_RADIUS; dr++) {
+      for (int dc = -heat[Math.abs(dr)]; dc <= heat[Math.abs(dr)]; dc++) {
+        if (Math.abs(dr) > BLAST_RADIUS || Math.abs(dc) > blast[Math.abs(dr)]) {
+          RING_ROWS[ring] = dr;
+          RING_COLS[ring++] = dc;
+        }
+      }
+    }
+  }
+
+  // Offsets of the 3 * 3 area used by surroundCheck(): the 8 neighbours, then the cell itself.
+  private static final int[] SURROUND_ROWS = {-1, -1, -1, 0, 0, 1, 1, 1, 0};
+  private static final int[] SURROUND_COLS = {-1, 0, 1, -1, 1, -1, 0, 1, 0};
+
+  private byte[] cells; // The board, one byte per cell, row by row: cells[row * numCols + col].
+  private int numRows;
+  private int numCols;
+  private int up, down; // Index offsets of the cells above and below.
+  private int[] surroundOffsets; // Index offsets of SURROUND_ROWS / SURROUND_COLS.
+  private Worker serial; // Runs the rules for the serial scheduler, set() and the public rule methods.
+  private RunIndex runs; // Where the liquids are, for their sideways flow; null while the parallel scheduler runs.
+  private long steps; // Number of steps run so far.
+
+  private int tileCols;
+  private boolean[] dirty; // True if the tile was written since the last clearDirty().
+  private int[] dirtyTiles; // Indices (tileRow * tileCols + tileCol) of the dirty tiles.
+  private int dirtyCount;
+
+  private int chunkCols;
+  private int[] chunkArea; // Number of cells in each chunk (smaller at the right and bottom edges).
+  private boolean[] awake;
+  private int[] awakeChunks; // The awake chunks; only the first awakeCount are valid.
+  private int[] awakePos; // Position of each awake chunk in awakeChunks.
+  private int awakeCount;
+  private long awakeCells; // Total area of the awake chunks.
+  private int[] quiet; // Samples of each chunk since it last changed.
+  private long[] population = new long[TYPES]; // Number of cells of each type.
+  private final int[] histogram = new int[TYPES]; // Scratch counts for count(), all 0 between calls.
+  private int[] chunkPopulation; // Number of cells of each type in each chunk, at [chunk * TYPES + type].
+  private long carry; // Leftover of the step scaling, so no fraction of a step gets lost.
+  private long blockWork, blockDone; // Samples of the serial scheduler in the current block of TICK_BLOCK steps, and the ones run.
+
+  private ForkJoinPool pool; // Null for the serial scheduler.
+  private Worker[] workers; // One per parallel task, each with its own Rng.
+  private boolean clearPending; // A parallel worker hit CLEAR; the board is cleared after the phase.
+  private int[] fuses = new int[16]; // Cells of the TNT lit since the last blast(); it explodes at the next multiple of TICK_BLOCK steps.
+  private int fuseCount;
+
+  private SimulationMetrics metrics; // Null unless counting.
+  private HeatField heat; // Null unless heat is simulated; then it, not the rules, boils, freezes, melts and sets.
+  private boolean[] stale; // True if the chunk was written since the heat field last counted its sources.
+
+  private TickMode mode = TickMode.STOCHASTIC;
+  private byte[] moved; // Sweep mode: sweepMark if the cell was written in the current sweep.
+  private byte sweepMark;
+  private byte[] sweepWork; // Sweep mode: SWEEP_FALLS and SWEEP_RISES if the chunk has particles for that pass.
+
+  public SimulationEngine(int numRows, int numCols) {
+    this(numRows, numCols, System.nanoTime());
+  }
+
+  /** @param seed Seed of the engine's random numbers; the same seed and the same input give the same world. */
+  public SimulationEngine(int numRows, int numCols, long seed) {
+    if ((long)numRows * numCols > Integer.MAX_VALUE)
+      throw new IllegalArgumentException(numRows + "x" + numCols + " is too many cells");
+    cells = new byte[numRows * numCols]; // Initialize the board.
+    this.numRows = numRows;
+    this.numCols = numCols;
+    up = -numCols;
+    down = numCols;
+    surroundOffsets = new int[SURROUND_ROWS.length];
+    for (int k = 0; k < surroundOffsets.length; k++)
+      surroundOffsets[k] = SURROUND_ROWS[k] * numCols + SURROUND_COLS[k];
+    serial = new Worker(new Rng(seed), false);
+    runs = new RunIndex(cells, numRows, numCols);
+    int tileRows = (numRows + TILE_SIZE - 1) >> TILE_SHIFT;
+    tileCols = (numCols + TILE_SIZE - 1) >> TILE_SHIFT;
+    dirty = new boolean[tileRows * tileCols];
+    dirtyTiles = new int[tileRows * tileCols];
+    markAllDirty(); // Nothing has been drawn yet.
+    int chunkRows = (numRows + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+    chunkCols = (numCols + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+    chunkArea = new int[chunkRows * chunkCols];
+    for (int chunk = 0; chunk < chunkArea.length; chunk++) {
+      int height = Math.min(CHUNK_SIZE, numRows - (chunk / chunkCols << CHUNK_SHIFT));
+      int width = Math.min(CHUNK_SIZE, numCols - (chunk % chunkCols << CHUNK_SHIFT));
+      chunkArea[chunk] = height * width;
+    }
+    awake = new boolean[chunkArea.length];
+    awakeChunks = new int[chunkArea.length];
+    awakePos = new int[chunkArea.length];
+    quiet = new int[chunkArea.length]; // Everything is asleep: an empty board has nothing to do.
+    chunkPopulation = new int[chunkArea.length * TYPES];
+    countEmpty();
+    stale = new boolean[chunkArea.length];
+    Arrays.fill(stale, true);
+  }
+
+  // Mask of the types a sweep's rising or falling pass has to update (the inert ones do nothing)
+  private static int workMask(boolean rising) {
+    int mask = 0;
+    for (int type = 0; type < TYPES; type++)
+      if (!Interactions.isInert(type) && Interactions.rises(type) == rising)
+        mask |= 1 << type;
+    return mask;
+  }
+
+  // Mask of the types that change phase with the heat (and only the ones that hold their own heat)
+  private static int phaseMask(boolean holdsHeat) {
+    int mask = 0;
+    for (int type = 0; type < TYPES; type++)
+      if (Interactions.changesPhase(type) && (!holdsHeat || Interactions.holdsHeat(type)))
+        mask |= 1 << type;
+    return mask;
+  }
+
+  public int getNumRows() {
+    return numRows;
+  }
+
+  public int getNumCols() {
+    return numCols;
+  }
+
+  /** @return The particle type at the given location. */
+  public int get(int row, int col) {
+    return cells[row * numCols + col];
+  }
+
+  /** @return Number of cells of the type on the whole board, as of the last write. Costs nothing:
+   *  every write keeps the counts up to date (the parallel workers' writes are added after each phase).
+   */
+  public long getPopulation(int type) {
+    return population[type];
+  }
+
+  /** @return Number of cells of the type in the chunk (chunkRow * getChunkCols() + chunkCol). */
+  public int getPopulation(int chunk, int type) {
+    return chunkPopulation[chunk * TYPES + type];
+  }
+
+  /** @return Name of the type, like "SAND". */
+  public static String typeName(int type) {
+    return TYPE_NAMES[type];
+  }
+
+  /** @return Type with the given name, or -1 if there is none. */
+  public static int typeNamed(String name) {
+    return Arrays.asList(TYPE_NAMES).indexOf(name);
+  }
+
+  /** Place a particle at the given location. */
+  public void set(int row, int col, int type) {
+    serial.write(row * numCols + col, type);
+  }
+
+  /** Paint a line from (fromRow, fromCol) to (toRow, toCol) with a round brush, leaving no gaps however
+   *  far apart the ends are. Parts outside the board are cut off. CLEAR empties the whole board at once.
+   *  @param radius Radius of the brush; 0 paints a line one cell wide.
+   */
+  public void stroke(int fromRow, int fromCol, int toRow, int toCol, int type, int radius) {
+    if (type == CLEAR) {
+      clear();
+      return;
+    }
+    int[] span = circle(radius);
+    // Bresenham: one stamp per cell of the line
+    int rows = Math.abs(toRow - fromRow), cols = Math.abs(toCol - fromCol);
+    int rowStep = fromRow < toRow ? 1 : -1, colStep = fromCol < toCol ? 1 : -1;
+    int error = cols - rows;
+    int row = fromRow, col = fromCol;
+    while (true) {
+      stamp(row, col, type, span);
+      if (row == toRow && col == toCol)
+        return;
+      int twice = 2 * error;
+      if (twice > -rows) {
+        error -= rows;
+        col += colStep;
+      }
+      if (twice < cols) {
+        error += cols;
+        row += rowStep;
+      }
+    }
+  }
+
+  // Half width of a circle of the radius at each distance from its center row
+  private static int[] circle(int radius) {
+    if (radius < CIRCLES.length)
+      return CIRCLES[radius];
+    int[] span = new int[radius + 1];
+    for (int dr = 0; dr <= radius; dr++)
+      span[dr] = (int)Math.sqrt(radius * radius + radius - dr * dr);
+    return span;
+  }
+
+  // Fills the circle with the given spans centered on (row, col)
+  private void stamp(int row, int col, int type, int[] span) {
+    int radius = span.length - 1;
+    int top = Math.max(0, row - radius), bottom = Math.min(numRows - 1, row + radius);
+    if (top > bottom || col + radius < 0 || col - radius >= numCols)
+      return; // Off the board.
+    for (int r = top; r <= bottom; r++) {
+      int half = span[Math.abs(r - row)];
+      int left = Math.max(0, col - half), right = Math.min(numCols - 1, col + half);
+      if (left <= right) // A center just off the board leaves the narrow rows off it too.
+        fillSpan(r, left, right, type);
+    }
+    touched(top, Math.max(0, col - radius), bottom, Math.min(numCols - 1, col + radius));
+  }
+
+  // Bulk operations: they write whole rows with Arrays.fill() or System.arraycopy(), keep the counts and
+  // the RunIndex right row by row, and mark the tiles dirty and wake the chunks once per call.
+  // Call them between ticks, from the thread that runs tick().
+
+  /** Fill the rectangle with the type. Parts outside the board are cut off. */
+  public void fillRect(int top, int left, int height, int width, int type) {
+    int bottom = Math.min(numRows, top + height) - 1, right = Math.min(numCols, left + width) - 1;
+    top = Math.max(0, top);
+    left = Math.max(0, left);
+    if (top > bottom || left > right)
+      return;
+    for (int row = top; row <= bottom; row++)
+      fillSpan(row, left, right, type);
+    touched(top, left, bottom, right);
+  }
+
+  /** Fill the circle around (row, col) with the type, like a brush of the radius. Parts outside the board are cut off. */
+  public void fillCircle(int row, int col, int radius, int type) {
+    stamp(row, col, type, circle(radius));
+  }
+
+  /** @return A copy of the rectangle, cut off at the board's edges. */
+  public Region copy(int top, int left, int height, int width) {
+    int bottom = Math.min(numRows, top + height), right = Math.min(numCols, left + width);
+    top = Math.max(0, top);
+    left = Math.max(0, left);
+    height = Math.max(0, bottom - top);
+    width = Math.max(0, right - left);
+    byte[] copy = new byte[height * width];
+    for (int row = 0; row < height; row++)
+      System.arraycopy(cells, (top + row) * numCols + left, copy, row * width, width);
+    return new Region(height, width, copy, false);
+  }
+
+  /** Paste a copied region with its top left corner at (top, left), over whatever is there.
+   *  Parts outside the board are cut off.
+   */
+  public void paste(Region region, int top, int left) {
+    int fromRow = Math.max(0, -top), fromCol = Math.max(0, -left); // First row and column of the region on the board.
+    int toRow = Math.min(region.getHeight(), numRows - top), toCol = Math.min(region.getWidth(), numCols - left);
+    if (fromRow >= toRow || fromCol >= toCol)
+      return;
+    byte[] source = region.cells();
+    int width = toCol - fromCol;
+    for (int row = fromRow; row < toRow; row++) {
+      int r = top + row, c = left + fromCol;
+      count(r, c, c + width - 1, -1);
+      System.arraycopy(source, row * region.getWidth() + fromCol, cells, r * numCols + c, width);
+      count(r, c, c + width - 1, 1);
+      if (runs != null)
+        runs.reindex(cells, r, c, c + width - 1);
+    }
+    touched(top + fromRow, left + fromCol, top + toRow - 1, left + toCol - 1);
+  }
+
+  // Fills the cells from..to (both included) of the row with the type
+  private void fillSpan(int row, int from, int to, int type) {
+    count(row, from, to, -1);
+    Arrays.fill(cells, row * numCols + from, row * numCols + to + 1, (byte)type);
+    countRun(row, from, to, type, 1);
+    if (runs != null)
+      runs.filled(row, from, to, type);
+  }
+
+  // Fills the cells from..to (both included) of the row, which all hold the type old, with the type
+  private void refill(int row, int from, int to, int old, int type) {
+    countRun(row, from, to, old, -1);
+    Arrays.fill(cells, row * numCols + from, row * numCols + to + 1, (byte)type);
+    countRun(row, from, to, type, 1);
+    if (runs != null)
+      runs.filled(row, from, to, type);
+  }
+
+  // Adds sign times the cells from..to (both included) of the row to the counts of the type
+  private void countRun(int row, int from, int to, int type, int sign) {
+    int first = (row >> CHUNK_SHIFT) * chunkCols;
+    for (int col = from; col <= to; col = (col | CHUNK_SIZE - 1) + 1) // One add per chunk the run crosses.
+      chunkPopulation[(first + (col >> CHUNK_SHIFT)) * TYPES + type] += sign * (Math.min(to, col | CHUNK_SIZE - 1) - col + 1);
+    population[type] += sign * (to - from + 1);
+  }
+
+  // Adds sign times the cells from..to (both included) of the row to the counts
+  private void count(int row, int from, int to, int sign) {
+    int first = (row >> CHUNK_SHIFT) * chunkCols;
+    for (int col = from; col <= to; col = (col | CHUNK_SIZE - 1) + 1) { // Chunk by chunk.
+      int end = Math.min(to, col | CHUNK_SIZE - 1);
+      for (int index = row * numCols + col; index <= row * numCols + end; index++)
+        histogram[cells[index]]++;
+      int base = (first + (col >> CHUNK_SHIFT)) * TYPES;
+      for (int type = 0; type < TYPES; type++) {
+        if (histogram[type] != 0) {
+          chunkPopulation[base + type] += sign * histogram[type];
+          population[type] += sign * histogram[type];
+          histogram[type] = 0;
+        }
+      }
+    }
+  }
+
+  // The rectangle was written: marks its tiles dirty and wakes its chunks, and the ones next to its edges
+  private void touched(int top, int left, int bottom, int right) {
+    for (int tileRow = top >> TILE_SHIFT; tileRow <= bottom >> TILE_SHIFT; tileRow++) {
+      for (int tileCol = left >> TILE_SHIFT; tileCol <= right >> TILE_SHIFT; tileCol++) {
+        int tile = tileRow * tileCols + tileCol;
+        if (!dirty[tile]) {
+          dirty[tile] = true;
+          dirtyTiles[dirtyCount++] = tile;
+        }
+      }
+    }
+    int lastRow = Math.min(numRows - 1, bottom + 1) >> CHUNK_SHIFT, lastCol = Math.min(numCols - 1, right + 1) >> CHUNK_SHIFT;
+    for (int chunkRow = Math.max(0, top - 1) >> CHUNK_SHIFT; chunkRow <= lastRow; chunkRow++)
+      for (int chunkCol = Math.max(0, left - 1) >> CHUNK_SHIFT; chunkCol <= lastCol; chunkCol++)
+        wake(chunkRow * chunkCols + chunkCol);
+  }
+
+  /** @return The board itself, one byte per cell, row by row (index row * getNumCols() + col). Read only. */
+  public byte[] getCells() {
+    return cells;
+  }
+
+  /** Replace the whole board with a copy of the given cells (laid out like getCells()). */
+  public void setCells(byte[] source) {
+    if (source.length != cells.length)
+      throw new IllegalArgumentException("Expected " + cells.length + " cells, got " + source.length);
+    System.arraycopy(source, 0, cells, 0, cells.length);
+    fuseCount = 0; // The lit TNT was on the old board.
+    if (heat != null)
+      heat.reset(); // So was its heat.
+    recount();
+    if (runs != null)
+      runs = new RunIndex(cells, numRows, numCols);
+    markAllDirty();
+    for (int chunk = 0; chunk < chunkArea.length; chunk++)
+      wake(chunk); // The chunks with nothing to do fall asleep again after a tick.
+  }
+
+  /** @return The random numbers of the serial scheduler (the parallel workers split theirs off it). */
+  public Rng getRng() {
+    return serial.rng;
+  }
+
+  /** Replace the engine's source of random numbers. */
+  public void setRng(Rng rng) {
+    serial.rng = rng;
+  }
+
+  /** Choose the scheduler.
+   *  @param threads 1 for the serial scheduler (the default); more to update the chunks on that many
+   *                 threads in a 4-phase checkerboard, so chunks updated at the same time never touch the same cells.
+   */
+  public void setParallelism(int threads) {
+    if (pool != null)
+      pool.shutdown();
+    pool = null;
+    workers = null;
+    blockWork = blockDone = 0; // The rest of the serial scheduler's block is skipped.
+    if (threads <= 1) {
+      if (runs == null)
+        runs = new RunIndex(cells, numRows, numCols); // The parallel workers didn't keep it up to date.
+      return;
+    }
+    runs = null; // The workers only flow half a chunk sideways, so a plain scan is as fast.
+    pool = new ForkJoinPool(threads);
+    workers = new Worker[threads * 4]; // A few tasks per thread, so the threads stay busy when chunks differ in cost.
+    for (int w = 0; w < workers.length; w++)
+      workers[w] = new Worker(serial.rng.split(), true);
+  }
+
+  /** Count the updates into the metrics from now on (null to stop). */
+  public void setMetrics(SimulationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /** Simulate heat with the field from now on (null to go back to the rules' own boiling, freezing and melting).
+   *  tick() steps it once per numCells steps.
+   */
+  public void setHeat(HeatField heat) {
+    if (heat != null && heat.getEngine() != this)
+      throw new IllegalArgumentException("The heat field belongs to another engine");
+    this.heat = heat;
+  }
+
+  public HeatField getHeat() {
+    return heat;
+  }
+
+  // Chunks written since the heat field last looked; it clears them as it counts them again
+  boolean[] staleChunks() {
+    return stale;
+  }
+
+  public int getParallelism() {
+    return pool == null ? 1 : pool.getParallelism();
+  }
+
+  public int getTileCols() {
+    return tileCols;
+  }
+
+  /** @return Number of tiles written since the last clearDirty(). */
+  public int getDirtyCount() {
+    return dirtyCount;
+  }
+
+  /** @return Indices (tileRow * getTileCols() + tileCol) of the dirty tiles. Only the first getDirtyCount() are valid. */
+  public int[] getDirtyTiles() {
+    return dirtyTiles;
+  }
+
+  /** Forget the dirty tiles; called once they have been drawn. */
+  public void clearDirty() {
+    for (int i = 0; i < dirtyCount; i++)
+      dirty[dirtyTiles[i]] = false;
+    dirtyCount = 0;
+  }
+
+  public void markAllDirty() {
+    for (int tile = 0; tile < dirty.length; tile++) {
+      if (!dirty[tile]) {
+        dirty[tile] = true;
+        dirtyTiles[dirtyCount++] = tile;
+      }
+    }
+  }
+
+  public int getChunkCount() {
+    return chunkArea.length;
+  }
+
+  public int getChunkCols() {
+    return chunkCols;
+  }
+
+  public int getAwakeChunkCount() {
+    return awakeCount;
+  }
+
+  private void wake(int chunk) {
+    quiet[chunk] = 0;
+    stale[chunk] = true;
+    if (awake[chunk])
+      return;
+    awake[chunk] = true;
+    if (sweepWork != null)
+      sweepWork[chunk] = SWEEP_FALLS | SWEEP_RISES; // Woke up during a sweep: visit it.
+    awakePos[chunk] = awakeCount;
+    awakeChunks[awakeCount++] = chunk;
+    awakeCells += chunkArea[chunk];
+  }
+
+  private void sleep(int chunk) {
+    awake[chunk] = false;
+    int last = awakeChunks[--awakeCount]; // Move the last awake chunk into the hole.
+    awakeChunks[awakePos[chunk]] = last;
+    awakePos[last] = awakePos[chunk];
+    awakeCells -= chunkArea[chunk];
+  }
+
+  /** Empty the whole board. */
+  public void clear() {
+    Arrays.fill(cells, (byte)EMPTY); // In place: a new board would be garbage as big as the world.
+    fuseCount = 0;
+    if (heat != null)
+      heat.reset();
+    countEmpty();
+    Arrays.fill(stale, true);
+    if (runs != null)
+      runs.clear();
+    markAllDirty();
+    sleepAll(); // Nothing left to do.
+    clearPending = false;
+  }
+
+  // Sets the counts of an empty board
+  private void countEmpty() {
+    Arrays.fill(population, 0);
+    Arrays.fill(chunkPopulation, 0);
+    population[EMPTY] = cells.length;
+    for (int chunk = 0; chunk < chunkArea.length; chunk++)
+      chunkPopulation[chunk * TYPES + EMPTY] = chunkArea[chunk];
+  }
+
+  // Counts every cell again, after the whole board was replaced
+  private void recount() {
+    Arrays.fill(population, 0);
+    Arrays.fill(chunkPopulation, 0);
+    for (int row = 0; row < numRows; row++) {
+      int first = (row >> CHUNK_SHIFT) * chunkCols;
+      for (int col = 0, index = row * numCols; col < numCols; col++, index++)
+        chunkPopulation[(first + (col >> CHUNK_SHIFT)) * TYPES + cells[index]]++;
+    }
+    for (int k = 0; k < chunkPopulation.length; k++)
+      population[k % TYPES] += chunkPopulation[k];
+  }
+
+  // True if the chunk holds a particle of any type in the mask (bit t for type t)
+  private boolean holdsAny(int chunk, int mask) {
+    int base = chunk * TYPES;
+    for (int type = 0; mask != 0; type++, mask >>>= 1)
+      if ((mask & 1) != 0 && chunkPopulation[base + type] != 0)
+        return true;
+    return false;
+  }
+
+  private void sleepAll() {
+    while (awakeCount > 0)
+      sleep(awakeChunks[awakeCount - 1]);
+  }
+
+  /** Choose how tick() runs the rules. The sweep mode always runs on one thread. */
+  public void setTickMode(TickMode mode) {
+    this.mode = mode;
+    moved = mode == TickMode.SWEEP ? new byte[cells.length] : null;
+    sweepWork = mode == TickMode.SWEEP ? new byte[chunkArea.length] : null;
+    sweepMark = 0;
+    carry = blockWork = blockDone = 0; // The rest of the current block is skipped.
+  }
+
+  public TickMode getTickMode() {
+    return mode;
+  }
+
+  /** Run the rules n times. Each step causes one random particle to maybe do something.
+   *  Steps that would land in sleeping chunks are skipped, so the work done is n times
+   *  the awake fraction of the world. In the sweep mode every numCells steps are one sweep().
+   *  The work is tied to the step count, not to the calls: tick(a) and then tick(b) does just what
+   *  tick(a + b) does, so a recorded session replays to the board it ended with however it was ticked.
+   */
+  public void tick(long n) {
+    long numCells = (long)numRows * numCols;
+    long end = steps + n;
+    while (steps < end) {
+      long pass = (steps / numCells + 1) * numCells; // The next multiple of numCells...
+      long block = (steps / TICK_BLOCK + 1) * TICK_BLOCK; // ... or of TICK_BLOCK.
+      long stop = Math.min(end, Math.min(pass, block));
+      if (mode == TickMode.STOCHASTIC && pool == null)
+        runSerial(stop);
+      steps = stop;
+      if (steps == pass) {
+        if (mode == TickMode.SWEEP)
+          sweep();
+        else if (pool != null)
+          tickParallel(numCells); // At most one sample per cell per pass, like the serial scheduler.
+        if (heat != null)
+          stepHeat();
+      }
+      if (steps == block && fuseCount > 0)
+        blast();
+    }
+    if (metrics != null)
+      serial.report();
+  }
+
+  // Runs the serial scheduler's samples that are due by the step stop, in the same block of TICK_BLOCK steps.
+  // A block gets its share of samples from the awake cells at its start, spread evenly over its steps.
+  private void runSerial(long stop) {
+    long numCells = (long)numRows * numCols;
+    long offset = steps % TICK_BLOCK;
+    if (offset == 0) {
+      carry += TICK_BLOCK * awakeCells;
+      blockWork = carry / numCells;
+      carry -= blockWork * numCells;
+      blockDone = 0;
+    }
+    long due = blockWork * (offset + stop - steps) / TICK_BLOCK;
+    for (; blockDone < due; blockDone++)
+      serial.step();
+  }
+
+  /** Step the heat field once and change the particles that are past their phase change temperature
+   *  (see Interactions.phaseAt()), one in PHASE_CHANCE per step so fronts stay ragged.
+   *  Only the blocks that hold a type past its temperature are looked at cell by cell.
+   */
+  public void stepHeat() {
+    heat.step();
+    float[] temperatures = heat.temperatures();
+    float[] hotPoints = heat.hotPoints(), coldPoints = heat.coldPoints();
+    int[] types = heat.types();
+    int shift = heat.getShift(), blockCols = heat.getCols();
+    int blocks = CHUNK_SIZE >> shift; // Blocks per chunk along each side.
+    for (int chunk = 0; chunk < chunkArea.length; chunk++) {
+      if (!holdsAny(chunk, PHASE_TYPES))
+        continue;
+      int top = chunk / chunkCols * blocks, left = chunk % chunkCols * blocks;
+      int bottom = Math.min(top + blocks, (numRows - 1 >> shift) + 1), right = Math.min(left + blocks, (numCols - 1 >> shift) + 1);
+      for (int blockRow = top; blockRow < bottom; blockRow++) {
+        for (int block = blockRow * blockCols + left; block < blockRow * blockCols + right; block++) {
+          float temperature = temperatures[block];
+          if (temperature <= hotPoints[block] && temperature >= coldPoints[block])
+            continue; // Nothing in it changes.
+          int mask = types[block] & PHASE_TYPES;
+          float settled = (mask & HOLDS_HEAT_TYPES) != 0 ? heat.settled(block) : temperature;
+          for (; mask != 0; mask &= mask - 1) {
+            int type = Integer.numberOfTrailingZeros(mask);
+            if (phase(type, temperature, settled) != type) {
+              changePhases(blockRow << shift, (block - blockRow * blockCols) << shift, 1 << shift, temperature, settled);
+              break;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Changes the phase of the particles in the block of size * size cells at (top, left)
+  private void changePhases(int top, int left, int size, float temperature, float settled) {
+    for (int row = top; row < Math.min(numRows, top + size); row++) {
+      for (int col = left, index = row * numCols + left; col < Math.min(numCols, left + size); col++, index++) {
+        int type = cells[index];
+        int phase = phase(type, temperature, settled);
+        if (phase != type && serial.rng.chance(PHASE_CHANCE)) {
+          serial.write(index, phase);
+          heat.add(row, col, Interactions.latentHeat(type, phase));
+        }
+      }
+    }
+  }
+
+  // What the type turns into in a block at the temperature, which would settle at settled. A type that holds
+  // its own heat only changes once it would settle past its point too, so new LAVA in a cold block doesn't set at once.
+  private static int phase(int type, float temperature, float settled) {
+    int phase = Interactions.phaseAt(type, temperature);
+    if (phase != type && Interactions.holdsHeat(type) && Interactions.phaseAt(type, settled) == type)
+      return type;
+    return phase;
+  }
+
+  // One pass of the parallel scheduler: shares the work of n steps between the awake chunks by their area,
+  // then updates the chunks in 4 phases: in each phase only chunks with the same (chunkRow % 2, chunkCol % 2) run, at the same time.
+  // They are a whole chunk apart, and a worker only touches cells within half a chunk of its own chunk.
+  private void tickParallel(long n) {
+    long numCells = (long)numRows * numCols;
+    carry += n * awakeCells;
+    long work = carry / numCells;
+    carry -= work * numCells;
+    if (work == 0)
+      return;
+    int count = awakeCount;
+    int[] chunks = Arrays.copyOf(awakeChunks, count);
+    long[] samples = new long[count];
+    for (int k = 0; k < count; k++) {
+      long share = work * chunkArea[chunks[k]];
+      samples[k] = share / awakeCells;
+      if (serial.rng.nextInt((int)awakeCells) < share % awakeCells) // Round at random, so small shares add up.
+        samples[k]++;
+    }
+    int[] phaseChunks = new int[count];
+    long[] phaseSamples = new long[count];
+    for (int phase = 0; phase < 4; phase++) {
+      int phaseCount = 0;
+      for (int k = 0; k < count; k++) {
+        int chunk = chunks[k];
+        if (((chunk / chunkCols & 1) << 1 | (chunk % chunkCols & 1)) == phase && samples[k] > 0) {
+          phaseChunks[phaseCount] = chunk;
+          phaseSamples[phaseCount++] = samples[k];
+        }
+      }
+      int taskCount = Math.min(workers.length, phaseCount);
+      List<ForkJoinTask<?>> tasks = new ArrayList<>(taskCount);
+      for (int t = 0; t < taskCount; t++) {
+        Worker worker = workers[t];
+        int first = t;
+        int total = phaseCount;
+        tasks.add(ForkJoinTask.adapt(() -> {
+          for (int k = first; k < total; k += taskCount) // Every taskCount-th chunk of the phase.
+            worker.runChunk(phaseChunks[k], phaseSamples[k]);
+        }));
+      }
+      pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+      for (int t = 0; t < taskCount; t++) {
+        workers[t].merge();
+        if (metrics != null)
+          workers[t].report();
+      }
+      if (clearPending)
+        clear();
+    }
+  }
+
+  /** Update every particle in the awake chunks once, instead of random ones. The falling types go bottom-up
+   *  and the rising ones (STEAM, GAS) top-down, so a particle moves into a row that is already done, and
+   *  each row is walked in the other direction than the last so liquids don't drift to one side.
+   *  A particle that was moved (or changed) earlier in the sweep is skipped, so nothing moves twice.
+   *  Only works in the sweep mode.
+   */
+  public void sweep() {
+    if (++sweepMark == 0) { // Wrapped around: marks from 256 sweeps ago would look new.
+      Arrays.fill(moved, (byte)0);
+      sweepMark = 1;
+    }
+    int count = awakeCount;
+    int[] chunks = Arrays.copyOf(awakeChunks, count);
+    for (int chunk : chunks) {
+      quiet[chunk] += chunkArea[chunk]; // Each cell gets sampled once; any change resets it.
+      // A particle that enters a chunk during the sweep is marked moved, so what a chunk holds now is all it has to visit.
+      sweepWork[chunk] = (byte)((holdsAny(chunk, FALLING_WORK) ? SWEEP_FALLS : 0) | (holdsAny(chunk, RISING_WORK) ? SWEEP_RISES : 0));
+    }
+    for (int row = numRows - 1; row >= 0; row--)
+      sweepRow(row, false);
+    boolean rising = false;
+    for (int type = 0; type < TYPES; type++)
+      rising |= (RISING_WORK >>> type & 1) != 0 && population[type] != 0;
+    if (rising) // Otherwise there is no STEAM or GAS anywhere, and the top-down pass is skipped.
+      for (int row = 0; row < numRows; row++)
+        sweepRow(row, true);
+    for (int chunk : chunks)
+      if (awake[chunk] && quiet[chunk] >= chunkArea[chunk])
+        serial.settle(chunk);
+  }
+
+  // Updates the rising or the falling particles of one row, in the awake chunks only
+  private void sweepRow(int row, boolean rising) {
+    int first = (row >> CHUNK_SHIFT) * chunkCols;
+    boolean leftToRight = ((row + sweepMark) & 1) == 0;
+    int work = rising ? SWEEP_RISES : SWEEP_FALLS;
+    for (int c = 0; c < chunkCols; c++) {
+      int chunkCol = leftToRight ? c : chunkCols - 1 - c;
+      if (!awake[first + chunkCol] || (sweepWork[first + chunkCol] & work) == 0)
+        continue;
+      int from = chunkCol << CHUNK_SHIFT;
+      int to = Math.min(from + CHUNK_SIZE, numCols);
+      if (leftToRight) {
+        for (int col = from; col < to; col++)
+          visit(row, col, rising);
+      } else {
+        for (int col = to - 1; col >= from; col--)
+          visit(row, col, rising);
+      }
+    }
+  }
+
+  private void visit(int row, int col, boolean rising) {
+    int index = row * numCols + col;
+    int type = cells[index];
+    if (type != EMPTY && moved[index] != sweepMark && Interactions.rises(type) == rising)
+      serial.update(row, col);
+  }
+
+  // Explodes all the TNT lit since the last blast in one pass. Every lit TNT goes off with all the TNT touching it,
+  // found with a scanline flood fill as runs of cells in a row. The circles around those runs become row spans
+  // that are merged where they overlap, so a cell is written once however many charges reach it, and a block
+  // of TNT costs a few spans per row instead of a circle per cell.
+  private void blast() {
+    int[] lit = Arrays.copyOf(fuses, fuseCount);
+    fuseCount = 0; // TNT lit by this blast goes off in the next one.
+    int[] charges = new int[48]; // (row, from, to) of every run of TNT that goes off.
+    int chargeCount = 0;
+    int[] stack = new int[16]; // Cells that may start another run of TNT.
+    int stackCount = 0;
+    for (int fuse : lit) {
+      if (cells[fuse] != FIRE && cells[fuse] != EMPTY)
+        continue; // Lit TNT leaves FIRE (or the EMPTY it burns out to); anything else was written over it since.
+      int row = fuse / numCols;
+      int from = fuse - row * numCols, to = from;
+      while (true) {
+        charges = push(charges, chargeCount++, row);
+        charges = push(charges, chargeCount++, from);
+        charges = push(charges, chargeCount++, to);
+        for (int r = Math.max(0, row - 1); r <= Math.min(numRows - 1, row + 1); r++) // The TNT touching the run.
+          for (int c = Math.max(0, from - 1), index = r * numCols + c; c <= Math.min(numCols - 1, to + 1); c++, index++)
+            if (cells[index] == TNT && (c == from - 1 || c == 0 || cells[index - 1] != TNT)) // Once per run.
+              stack = push(stack, stackCount++, index);
+        int index = -1;
+        while (stackCount > 0 && cells[index = stack[--stackCount]] != TNT) // Skip the ones already in a run.
+          index = -1;
+        if (index < 0)
+          break;
+        row = index / numCols;
+        from = to = index - row * numCols;
+        while (from > 0 && cells[row * numCols + from - 1] == TNT)
+          from--;
+        while (to < numCols - 1 && cells[row * numCols + to + 1] == TNT)
+          to++;
+        refill(row, from, to, TNT, EMPTY); // Used up, so the flood fill doesn't find it again.
+      }
+    }
+
+    int[] flung = new int[TYPES];
+    int[] core = blastSpans(charges, chargeCount, CIRCLES[BLAST_RADIUS]);
+    for (int k = 0; k < core.length; k += 2)
+      blastSpan(core[k], core[k + 1], true, flung);
+    int[] heat = blastSpans(charges, chargeCount, CIRCLES[HEAT_RADIUS]);
+    for (int k = 0; k < heat.length; k += 2)
+      blastSpan(heat[k], heat[k + 1], false, flung);
+    // Throw what the blast didn't destroy out into the heat around it; whatever finds no room is lost
+    Rng rng = serial.rng;
+    for (int type = 0; type < TYPES; type++) {
+      for (int k = 0; k < flung[type]; k++) {
+        int charge = rng.nextInt(chargeCount / 3) * 3;
+        int offset = rng.nextInt(RING_ROWS.length);
+        int row = charges[charge] + RING_ROWS[offset];
+        int col = charges[charge + 1] + rng.nextInt(charges[charge + 2] - charges[charge + 1] + 1) + RING_COLS[offset];
+        if (row >= 0 && row < numRows && col >= 0 && col < numCols && cells[row * numCols + col] == EMPTY)
+          serial.write(row * numCols + col, type);
+      }
+    }
+  }
+
+  // The circles around the runs as spans of cells: pairs of the first and the last index, in one row,
+  // in order and not overlapping
+  private int[] blastSpans(int[] charges, int count, int[] circle) {
+    int radius = circle.length - 1;
+    long[] spans = new long[count / 3 * (2 * radius + 1)];
+    int n = 0;
+    for (int k = 0; k < count; k += 3) {
+      int row = charges[k], from = charges[k + 1], to = charges[k + 2];
+      for (int r = Math.max(0, row - radius); r <= Math.min(numRows - 1, row + radius); r++) {
+        int half = circle[Math.abs(r - row)];
+        long first = r * numCols + Math.max(0, from - half);
+        spans[n++] = first << 32 | r * numCols + Math.min(numCols - 1, to + half); // Sorts by the first cell.
+      }
+    }
+    Arrays.sort(spans, 0, n);
+    int[] merged = new int[2 * n];
+    int m = 0;
+    for (int k = 0; k < n; k++) {
+      int first = (int)(spans[k] >>> 32), last = (int)spans[k];
+      if (m > 0 && first <= merged[m - 1] + 1 && first / numCols == merged[m - 1] / numCols) {
+        merged[m - 1] = Math.max(merged[m - 1], last);
+      } else {
+        merged[m++] = first;
+        merged[m++] = last;
+      }
+    }
+    return Arrays.copyOf(merged, m);
+  }
+
+  // Blows up the cells first..last of one row: in the blast circle (core) everything but the blast proof types
+  // is cleared, in the heat around it what burns catches fire. TNT is lit either way.
+  // Only the cells that change are counted, a chunk at a time.
+  private void blastSpan(int first, int last, boolean core, int[] flung) {
+    int row = first / numCols;
+    int base = row * numCols;
+    int from = first - base, to = last - base;
+    int[] changes = new int[TYPES];
+    boolean changed = false;
+    for (int col = from; col <= to; col = (col | CHUNK_SIZE - 1) + 1) {
+      int end = base + Math.min(to, col | CHUNK_SIZE - 1);
+      boolean chunkChanged = false;
+      for (int index = base + col; index <= end; index++) {
+        int type = cells[index];
+        int blasted = type;
+        if (type == TNT) {
+          blasted = FIRE;
+          fuses = push(fuses, fuseCount++, index);
+        } else if (core && !Interactions.isBlastProof(type)) {
+          if (Interactions.isFlung(type))
+            flung[type]++;
+          blasted = serial.rng.nextInt(FIRE_CHANCE) == 0 ? FIRE : EMPTY;
+        } else if (!core && Interactions.ignites(type)) {
+          blasted = FIRE;
+        }
+        if (blasted != type) {
+          cells[index] = (byte)blasted;
+          changes[type]--;
+          changes[blasted]++;
+          chunkChanged = true;
+        }
+      }
+      if (chunkChanged) {
+        int chunkBase = ((row >> CHUNK_SHIFT) * chunkCols + (col >> CHUNK_SHIFT)) * TYPES;
+        for (int type = 0; type < TYPES; type++) {
+          chunkPopulation[chunkBase + type] += changes[type];
+          population[type] += changes[type];
+          changes[type] = 0;
+        }
+        changed = true;
+      }
+    }
+    if (!changed)
+      return;
+    if (runs != null)
+      runs.reindex(cells, row, from, to);
+    touched(row, from, row, to);
+  }
+
+  /** @return Number of steps run by tick() so far. */
+  public long getStepCount() {
+    return steps;
+  }
+
+  /** @return Hash of the whole board, to check that two runs ended in the same world. */
+  public long checksum() {
+    long hash = 1125899906842597L;
+    for (byte type : cells)
+      hash = 31 * hash + type;
+    return hash;
+  }
+
+  // Called repeatedly.
+  // Causes one random particle in an awake chunk to maybe do something.
+  public void step() {
+    serial.step();
+  }
+
+  // Causes the particle at (row, col) to maybe do something.
+  public void update(int row, int col) {
+    serial.update(row, col);
+  }
+
+  /** Water Physics... This physics will apply on WATER, OIL, and LAVA.
+   * @param obj Main object that the physics will apply on; what it can swap with comes from Interactions.
+   */
+  public void waterPhysics(int row, int col, int obj) {
+    serial.waterPhysics(row, col, obj);
+  }
+
+  /** Burn objects... This physics will apply on FIRE and LAVA.
+   * @param burner FIRE or LAVA; what it can burn and how fast comes from Interactions.
+   */
+  public void burnObject(int row, int col, int burner) {
+    serial.burnObject(row, col, burner);
+  }
+
+  /** Randomly select one of the 3 * 3 areas that is adjacent to the object.
+   * @return Index of the selected cell (row * numCols + col); the object itself if the area is out of the bound.
+   */
+  public int surroundCheck(int row, int col) {
+    return serial.surroundCheck(row, col);
+  }
+
+  /** @return True once in about interval calls. */
+  public boolean delay(int interval) {
+    return serial.delay(interval);
+  }
+
+  /** Runs the rules. The serial worker does all the work of the serial scheduler; each task of the
+   *  parallel scheduler has its own worker with its own Rng. A parallel worker only touches cells within
+   *  half a chunk of its chunk, and keeps the dirty tiles, wakes, sleeps and population counts it causes until merge().
+   */
+  private class Worker {
+    private Rng rng;
+    private final boolean deferred; // True for the parallel workers.
+    private int chunk = -1; // Chunk being updated by runChunk().
+    private int chunkRow, chunkCol; // ... and its position.
+    private int minCol, maxCol; // Columns the liquids may flow to.
+    private int[] tiles = new int[16];
+    private int tileCount;
+    private int[] wakes = new int[16];
+    private int wakeCount;
+    private int[] sleeps = new int[4];
+    private int sleepCount;
+    private int[] counts; // Parallel workers: population changes in the 3 * 3 chunks around chunk, at [(dr * 3 + dc) * TYPES + type].
+    private int[] countChanges = new int[16]; // ... and pairs of (chunk * TYPES + type, change) for merge().
+    private int countChangeCount;
+    private long changes; // Cells changed by write().
+    private int[] lit = new int[4]; // Parallel workers: TNT lit in the phase, for merge().
+    private int litCount;
+    // Counts for the metrics, until report()
+    private final long[] typeUpdates = new long[Interactions.TYPES];
+    private final long[] typeNanos = new long[Interactions.TYPES];
+    private long effective;
+    private int clock;
+
+    Worker(Rng rng, boolean deferred) {
+      this.rng = rng;
+      this.deferred = deferred;
+      if (deferred)
+        counts = new int[9 * TYPES];
+      minCol = 0;
+      maxCol = numCols - 1;
+    }
+
+    /** All the rules write to the board through here, so every change marks its tile dirty
+     *  and wakes its chunk (and the chunks next to it if the cell is on the chunk's border).
+     */
+    void write(int index, int type) {
+      int old = cells[index];
+      if (old == type)
+        return;
+      cells[index] = (byte)type;
+      changes++;
+      if (runs != null)
+        runs.changed(index, old, type);
+      if (moved != null)
+        moved[index] = sweepMark;
+      int row = index / numCols;
+      int col = index - row * numCols;
+      int tile = (row >> TILE_SHIFT) * tileCols + (col >> TILE_SHIFT);
+      if (!dirty[tile]) {
+        dirty[tile] = true;
+        if (deferred)
+          tiles = push(tiles, tileCount++, tile);
+        else
+          dirtyTiles[dirtyCount++] = tile;
+      }
+      int chunkRow = row >> CHUNK_SHIFT;
+      int chunkCol = col >> CHUNK_SHIFT;
+      count(chunkRow, chunkCol, old, type);
+      int inRow = row & (CHUNK_SIZE - 1);
+      int inCol = col & (CHUNK_SIZE - 1);
+      if (inRow != 0 && inRow != CHUNK_SIZE - 1 && inCol != 0 && inCol != CHUNK_SIZE - 1) {
+        wakeChunk(chunkRow * chunkCols + chunkCol); // Inside the chunk; the common case.
+        return;
+      }
+      int fromRow = Math.max(0, inRow == 0 ? chunkRow - 1 : chunkRow);
+      int toRow = Math.min(chunkArea.length / chunkCols - 1, inRow == CHUNK_SIZE - 1 ? chunkRow + 1 : chunkRow);
+      int fromCol = Math.max(0, inCol == 0 ? chunkCol - 1 : chunkCol);
+      int toCol = Math.min(chunkCols - 1, inCol == CHUNK_SIZE - 1 ? chunkCol + 1 : chunkCol);
+      for (int r = fromRow; r <= toRow; r++)
+        for (int c = fromCol; c <= toCol; c++)
+          wakeChunk(r * chunkCols + c);
+    }
+
+    // One cell of the chunk went from type old to type
+    private void count(int chunkRow, int chunkCol, int old, int type) {
+      if (deferred) { // Another worker may be counting in the same chunk.
+        int base = ((chunkRow - this.chunkRow + 1) * 3 + chunkCol - this.chunkCol + 1) * TYPES;
+        counts[base + old]--;
+        counts[base + type]++;
+        return;
+      }
+      int base = (chunkRow * chunkCols + chunkCol) * TYPES;
+      chunkPopulation[base + old]--;
+      chunkPopulation[base + type]++;
+      population[old]--;
+      population[type]++;
+    }
+
+    // Keeps the counts of the chunks around the one just run for merge()
+    private void saveCounts() {
+      for (int k = 0; k < 9; k++) {
+        int neighbour = (chunkRow + k / 3 - 1) * chunkCols + chunkCol + k % 3 - 1; // Only counted if it exists.
+        for (int type = 0; type < TYPES; type++) {
+          int change = counts[k * TYPES + type];
+          if (change != 0) {
+            counts[k * TYPES + type] = 0;
+            countChanges = push(countChanges, countChangeCount++, neighbour * TYPES + type);
+            countChanges = push(countChanges, countChangeCount++, change);
+          }
+        }
+      }
+    }
+
+    // The TNT at index caught fire: it explodes with the next blast()
+    private void light(int index) {
+      if (deferred)
+        lit = push(lit, litCount++, index);
+      else
+        fuses = push(fuses, fuseCount++, index);
+    }
+
+    private void wakeChunk(int chunk) {
+      if (!deferred)
+        wake(chunk);
+      else if (chunk == this.chunk) {
+        quiet[chunk] = 0; // Our own chunk is awake until merge() anyway.
+        stale[chunk] = true;
+      }
+      else
+        wakes = push(wakes, wakeCount++, chunk);
+    }
+
+    /** Called after every sample of the chunk. Once the chunk has been sampled as often as it has cells
+     *  (one tick of it) without a change, and nothing in it can change by itself, it falls asleep.
+     *  @return True if it fell asleep.
+     */
+    private boolean sampled(int chunk) {
+      if (!awake[chunk] || ++quiet[chunk] < chunkArea[chunk])
+        return false;
+      return settle(chunk);
+    }
+
+    // The chunk has been quiet for a tick: sleeps it unless something in it can change by itself or still has somewhere to go
+    boolean settle(int chunk) {
+      quiet[chunk] = 0;
+      for (int type = 0; type < TYPES; type++) {
+        if (!Interactions.isRestless(type))
+          continue;
+        int count = chunkPopulation[chunk * TYPES + type];
+        if (deferred && chunk == this.chunk)
+          count += counts[4 * TYPES + type]; // Our own changes to it are not merged yet.
+        if (count != 0)
+          return false;
+      }
+      if (canMove(chunk))
+        return false;
+      if (deferred)
+        sleeps = push(sleeps, sleepCount++, chunk);
+      else
+        sleep(chunk);
+      return true;
+    }
+
+    // True if a SAND, STONE, WATER or OIL particle of the chunk could move the next time it is updated. They only
+    // move once in a few samples, so a lone falling grain leaves its chunk quiet for longer than a tick.
+    // Checks what the rules check: the cell below, then the cells below to the sides (SAND) or the ends of the
+    // liquid under it and the cells beside it (WATER, OIL).
+    private boolean canMove(int chunk) {
+      int top = chunk / chunkCols << CHUNK_SHIFT, left = chunk % chunkCols << CHUNK_SHIFT;
+      int bottom = Math.min(numRows - 2, top + CHUNK_SIZE - 1); // Nothing moves on the last row.
+      int right = Math.min(numCols - 1, left + CHUNK_SIZE - 1);
+      for (int row = top; row <= bottom; row++) {
+        int runType = -1, runTo = -1; // The liquid under the row up to column runTo has no way out.
+        for (int col = left, i = row * numCols + left; col <= right; col++, i++) {
+          int type = cells[i];
+          if (type != SAND && type != STONE && type != WATER && type != OIL)
+            continue;
+          int below = cells[i + down];
+          if (Interactions.canDisplace(type, below))
+            return true;
+          if (below != type || type == STONE)
+            continue;
+          if (type == SAND) {
+            if (col > 0 && Interactions.canDisplace(SAND, cells[i + down - 1])
+                || col < numCols - 1 && Interactions.canDisplace(SAND, cells[i + down + 1]))
+              return true;
+            continue;
+          }
+          if (type != runType || col > runTo) { // The ends of a run are looked up once for all the cells over it.
+            int leftEnd = runEnd(row + 1, col, type, minCol), rightEnd = runEnd(row + 1, col, type, maxCol);
+            if (leftEnd >= 0 && Interactions.canDisplace(type, cells[(row + 1) * numCols + leftEnd])
+                || rightEnd >= 0 && Interactions.canDisplace(type, cells[(row + 1) * numCols + rightEnd]))
+              return true;
+            runType = type;
+            runTo = rightEnd < 0 ? maxCol : rightEnd - 1;
+          }
+          if (col > 0 && Interactions.canDisplace(type, cells[i - 1]) || col < numCols - 1 && Interactions.canDisplace(type, cells[i + 1]))
+            return true;
+        }
+      }
+      return false;
+    }
+
+    // Called repeatedly.
+    // Causes one random particle in an awake chunk to maybe do something.
+    void step() {
+      if (awakeCount == 0)
+        return;
+      // Randomly pick one particle of the awake chunks: a cell of a random awake chunk's whole CHUNK_SIZE square,
+      // picked again if it lies past the board's edge, so the smaller chunks at the edges are picked by their area.
+      int chunk, row, col;
+      do {
+        chunk = awakeChunks[rng.nextInt(awakeCount)];
+        int cell = rng.nextInt(CHUNK_SIZE * CHUNK_SIZE);
+        row = (chunk / chunkCols << CHUNK_SHIFT) + (cell >> CHUNK_SHIFT);
+        col = (chunk % chunkCols << CHUNK_SHIFT) + (cell & CHUNK_SIZE - 1);
+      } while (row >= numRows || col >= numCols);
+      update(row, col);
+      sampled(chunk);
+    }
+
+    // Runs the given number of steps in one chunk (parallel scheduler).
+    void runChunk(int chunk, long samples) {
+      this.chunk = chunk;
+      chunkRow = chunk / chunkCols;
+      chunkCol = chunk % chunkCols;
+      int startRow = chunkRow << CHUNK_SHIFT;
+      int startCol = chunkCol << CHUNK_SHIFT;
+      int height = Math.min(CHUNK_SIZE, numRows - startRow);
+      int width = Math.min(CHUNK_SIZE, numCols - startCol);
+      minCol = Math.max(0, startCol - CHUNK_SIZE / 2);
+      maxCol = Math.min(numCols - 1, startCol + CHUNK_SIZE + CHUNK_SIZE / 2 - 1);
+      for (long k = 0; k < samples; k++) {
+        update(startRow + rng.nextInt(height), startCol + rng.nextInt(width));
+        if (sampled(chunk))
+          break; // Fell asleep.
+      }
+      saveCounts();
+      this.chunk = -1;
+    }
+
+    // Hands the dirty tiles, population counts, sleeps and wakes collected in a phase over to the engine.
+    void merge() {
+      for (int k = 0; k < countChangeCount; k += 2) {
+        chunkPopulation[countChanges[k]] += countChanges[k + 1];
+        population[countChanges[k] % TYPES] += countChanges[k + 1];
+      }
+      countChangeCount = 0;
+      for (int k = 0; k < litCount; k++)
+        fuses = push(fuses, fuseCount++, lit[k]);
+      litCount = 0;
+      for (int k = 0; k < tileCount; k++)
+        dirtyTiles[dirtyCount++] = tiles[k];
+      for (int k = 0; k < sleepCount; k++)
+        if (awake[sleeps[k]])
+          sleep(sleeps[k]);
+      for (int k = 0; k < wakeCount; k++)
+        wake(wakes[k]);
+      tileCount = sleepCount = wakeCount = 0;
+    }
+
+    // Causes the particle at (row, col) to maybe do something.
+    void update(int row, int col) {
+      if (metrics == null) {
+        rules(row, col);
+        return;
+      }
+      int type = cells[row * numCols + col];
+      long before = changes;
+      if ((++clock & (TIME_SAMPLE - 1)) == 0) { // nanoTime() costs more than most updates, so only some are timed.
+        long start = System.nanoTime();
+        rules(row, col);
+        typeNanos[type] += (System.nanoTime() - start) * TIME_SAMPLE;
+      } else {
+        rules(row, col);
+      }
+      typeUpdates[type]++;
+      if (changes != before)
+        effective++;
+    }
+
+    // Hands the counts since the last call to the metrics
+    void report() {
+      metrics.addUpdates(typeUpdates, typeNanos, effective);
+      Arrays.fill(typeUpdates, 0);
+      Arrays.fill(typeNanos, 0);
+      effective = 0;
+    }
+
+    private void rules(int row, int col) {
+      int i = row * numCols + col;
+      switch(cells[i]) {
+        case SAND: {
+          if (row < numRows - 1 && delay(3)) { // If the SAND is not reached to the bottom yet.
+            int below = i + down;
+            int type = cells[below]; // Check what is exist under the current object.
+
+            if (Interactions.canDisplace(SAND, type)) { // If an interactable object exists under the SAND, swap the object with SAND.
+              write(i, type);
+              write(below, SAND);
+            } else if (cells[below] == SAND) { // If there is a another SAND exist under the SAND, try to make SAND triangle form.
+              if (col >= numCols - 1) { // If the location is rightmost
+                int left = cells[below - 1]; // Check what is exist on left side.
+                if (Interactions.canDisplace(SAND, left)) { // If the left side is a interactable Objects, swap the object with SAND.
+                  write(i, left);
+                  write(below - 1, SAND);
+                }
+                return; // Escape the case to prevent the other if statement.
+              } else if (col <= 0) { // If the location is leftmost
+                int right = cells[below + 1];
+                if (Interactions.canDisplace(SAND, right)) { // If the right side is a interactable Objects, swap the object with SAND.
+                  write(i, right);
+                  write(below + 1, SAND);
+                }
+                return; // Escape the case to prevent the other if statement.
+              }
+
+              // If the SAND is not located at either rightmost nor leftmost, check both side.
+              int left = Interactions.canDisplace(SAND, cells[below - 1]) ? cells[below - 1] : -1; // -1 if the object is not a interactable.
+              int right = Interactions.canDisplace(SAND, cells[below + 1]) ? cells[below + 1] : -1;
+              if (left != -1 && right != -1) { // If either left or right side of the bottom SAND is an interactable Objects,
+                int LR = rng.nextInt(2); // Randomly swap the SAND with either left or right side object.
+                if (LR == 0) {
+                  write(i, right); // Swap with right side obj.
+                  write(below + 1, SAND);
+                } else {
+                  write(i, left); // Swap with left side obj.
+                  write(below - 1, SAND);
+                }
+              } else if (right != -1) { // If the right side of the bottom SAND is an interactable Objects, swap the object.
+                write(i, right);
+                write(below + 1, SAND);
+              } else if (left != -1) { // If the right side of the bottom SAND is an interactable Objects, swap the object.
+                write(i, left);
+                write(below - 1, SAND);
+              }
+            }
+          }
+          break; // End of SAND mechanism.
+        }
+        case WATER: {
+          if (row < numRows - 1 && delay(3)) { // If the WATER is not reached to the bottom yet.
+            waterPhysics(row, col, WATER); // Apply water physics.
+          }
+          break;
+        }
+        case OIL: {
+          if (row < numRows - 1 && delay(3)) {
+            waterPhysics(row, col, OIL); // Apply water physics to OIL.
+          }
+          break;
+        }
+        case LAVA: {
+          if (row < numRows - 1 && delay(20)) { // Add delay to make it slower than WATER and OIL.
+            if (heat != null && cells[i + down] == WATER) { // With the heat field, LAVA sinks into the WATER, which quenches it.
+              write(i, WATER);
+              write(i + down, LAVA);
+            } else {
+              if (heat == null && cells[i + down] == WATER) { // If LAVA is exist above the WATER,
+                write(i, STEAM);
+                write(i + down, STONE); // Formed STONE.
+              } else if (heat == null && row > 0 && cells[i + up] == WATER) { // If WATER is exist above the LAVA,
+                write(i, STEAM);
+                write(i + down, OBSIDIAN); // Formed OBSIDIAN.
+              }
+              waterPhysics(row, col, LAVA); // Apply water physics to LAVA.
+            }
+          }
+          burnObject(row, col, LAVA); // Randomly select object in 3*3 area, and burn it.
+          break;
+        }
+        case FIRE: {
+          if (delay(80)) // Self destroy.
+            write(i, EMPTY);
+          if (row - 1 > 0 && delay(85)) { // Spread upward.
+            if (cells[i + up] == EMPTY)
+              write(i + up, FIRE);
+          }
+          burnObject(row, col, FIRE); // Randomly select object in 3*3 area, and burn it.
+          break;
+        }
+        case ICE: {
+          if (heat == null && delay(15)) { // With the heat field, the cold of the ICE freezes and condenses.
+            int newLoc = surroundCheck(row, col); // Get random loc
+            if (cells[newLoc] == WATER) // If there is WATER near by ICE, frozen it.
+              write(newLoc, ICE);
+            if (cells[newLoc] == STEAM) // If there is STEAM near by ICE, form the WATER.
+              write(newLoc, WATER);
+          }
+          break;
+        }
+        case STEAM: { // STEAM is basically inverse of WATER.
+          if (row > 0 && delay(10)) {
+            int above = i + up;
+
+            int type = cells[above]; // Check if there is any interactable Objects above the STEAM.
+            if (Interactions.canDisplace(STEAM, type)) { // If there is a interactable Objects exist, swap the object.
+              write(i, type);
+              write(above, STEAM);
+            } else if (cells[above] == STEAM) { // If there is a STEAM exist above the STEAM, Do same thing with WATER but inverse.
+              int leftEmpty = 0;
+              int rightEmpty = 0;
+              int left = 0, right = 0;
+              int end = runEnd(row - 1, col, STEAM, minCol);
+              if (end >= 0) {
+                left = cells[above - (col - end)];
+                if (Interactions.canDisplace(STEAM, left))
+                  leftEmpty = col - end;
+              }
+              end = runEnd(row - 1, col, STEAM, maxCol);
+              if (end >= 0) {
+                right = cells[above + (end - col)];
+                if (Interactions.canDisplace(STEAM, right))
+                  rightEmpty = end - col;
+              }
+              if (leftEmpty == rightEmpty && leftEmpty == 0) {
+                int rd = rng.nextInt(3) - 1;
+                if (col + rd >= 0 && col + rd <= numCols - 1) {
+                  int change = cells[i + rd];
+                  if (Interactions.canDisplace(STEAM, change)) {
+                    write(i, change);
+                    write(i + rd, STEAM);
+                  }
+                }
+              } else {
+                if (rightEmpty == 0 || leftEmpty >= rightEmpty) {
+                  write(i, left);
+                  write(above - leftEmpty, STEAM);
+                } else if (leftEmpty == 0) {
+                  write(i, right);
+                  write(above + rightEmpty, STEAM);
+                }
+              }
+            }
+          }
+          break;
+        }
+        case STONE: {
+          if (row < numRows - 1 && delay(5)) { // If the sand is not reached to the bottom yet.
+            int type = cells[i + down];
+
+            if (Interactions.canDisplace(STONE, type)) { // If nothing or water exist under the sand, fall down one row.
+              write(i, type);
+              write(i + down, STONE);
+            }
+          }
+          break;
+        }
+        case GAS: {
+          if (delay(5))
+            return;
+
+          int newRow = row, newCol = col; // Get random location but only top, left, right, and bottom. Otherwise, the gas will escape from the container sometimes.
+          switch (rng.nextInt(5) + 1) {
+            case 1: // Top
+              newRow = row - 1;
+              break;
+            case 2: // Left
+              newCol = col - 1;
+              break;
+            case 3: // Right
+              newCol = col + 1;
+              break;
+            case 4: // Bottom
+              newRow = row + 1;
+              break;
+          }
+          if (newRow < 0 || newRow > numRows - 1 || newCol < 0 || newCol > numCols - 1) {
+            newRow = row;
+            newCol = col;
+          }
+          int newLoc = newRow * numCols + newCol;
+          if (cells[newLoc] == EMPTY) { // Swap object.
+            write(i, EMPTY);
+            write(newLoc, GAS);
+          }
+          break;
+        }
+        case VIRUS: {
+          if (delay(5)) // Delay.
+            return;
+
+          if (delay(100)) {
+            int newLoc = surroundCheck(row, col); // Pick random location.
+            if (cells[newLoc] != EMPTY) // If the location is not empty.
+              write(newLoc, VIRUS); // Infect object.
+          }
+          if (delay(400)) // Destroy itself.
+            write(i, EMPTY);
+          break;
+        }
+        case CLEAR: { // Clear all.
+          if (deferred)
+            clearPending = true; // Other workers are still using the board.
+          else
+            clear();
+          break;
+        }
+        default: {
+          break;
+        }
+      }
+    }
+
+    /** Water Physics... This physics will apply on WATER, OIL, and LAVA.
+     * @param obj Main object that the physics will apply on; what it can swap with comes from Interactions.
+     */
+    void waterPhysics(int row, int col, int obj) {
+      int i = row * numCols + col;
+      int below = i + down;
+      int type = cells[below]; // Check what is exist under the current object.
+
+      if (Interactions.canDisplace(obj, type)) { // If an interactable object exists under the WATER, swap the object with WATER.
+        write(i, type);
+        write(below, obj);
+      } else if (cells[below] == obj) { // If there is a another WATER exist under the WATER,
+        // This chunk of code will find the closest empty place form the under row, and filled the water to that place.
+        // This mechanism will make WATER acts more like a WATER than just random movement.
+        int leftEmpty = 0; // Closest empty spot from the left side.
+        int rightEmpty = 0; // Closest empty spot from the right side.
+        int left = 0, right = 0;
+        int end = runEnd(row + 1, col, obj, minCol); // Where the WATER under us ends on the left.
+        if (end >= 0) {
+          left = cells[below - (col - end)];
+          if (Interactions.canDisplace(obj, left))
+            leftEmpty = col - end;
+        }
+        end = runEnd(row + 1, col, obj, maxCol);
+        if (end >= 0) {
+          right = cells[below + (end - col)];
+          if (Interactions.canDisplace(obj, right))
+            rightEmpty = end - col;
+        }
+        if (leftEmpty == rightEmpty && leftEmpty == 0) {
+          int rd = rng.nextInt(3) - 1;
+          if (col + rd >= 0 && col + rd <= numCols - 1) {
+            int change = cells[i + rd];
+            if (Interactions.canDisplace(obj, change)) {
+              write(i, change);
+              write(i + rd, obj);
+            }
+          }
+        } else {
+          if (rightEmpty == 0 || leftEmpty >= rightEmpty) {
+            write(i, left);
+            write(below - leftEmpty, obj);
+          } else if (leftEmpty == 0) {
+            write(i, right);
+            write(below + rightEmpty, obj);
+          }
+        }
+      }
+    }
+
+    /** Burn objects... This physics will apply on FIRE and LAVA.
+     * @param burner FIRE or LAVA; what it can burn and how fast comes from Interactions.
+     */
+    void burnObject(int row, int col, int burner) {
+      int i = row * numCols + col;
+      int newLoc = surroundCheck(row, col); // Get random location in 3*3 area.
+      int type = cells[newLoc]; // Check which object is exists at newLoc.
+      if (!Interactions.canBurn(burner, type))
+        return;
+      if (heat != null && Interactions.changesPhase(type))
+        return; // The heat field boils, melts and glazes it.
+      switch (type) {
+        case WATER: // Formed STEAM when WATER evaporate.
+          if (newLoc / numCols - 1 > 0 && delay(Interactions.burnDelay(WATER))) {
+            write(i, EMPTY);
+            write(newLoc, FIRE);
+            write(newLoc + up, STEAM);
+          }
+          break;
+        case ICE: // Formed STEAM when ICE melted.
+          if (newLoc / numCols - 1 > 0 && delay(Interactions.burnDelay(ICE))) {
+            write(i, EMPTY);
+            write(newLoc, WATER);
+            write(newLoc + up, STEAM);
+          }
+          break;
+        case SAND: // Turn SAND into the GLASS
+          if (delay(Interactions.burnDelay(SAND))) {
+            write(i, GLASS);
+            write(newLoc, GLASS);
+          }
+          break;
+        default: // Just burn in different speed: TNT, GAS, OIL, LEAF, WOOD, VIRUS
+          if (delay(Interactions.burnDelay(type))) {
+            write(newLoc, FIRE);
+            if (type == TNT)
+              light(newLoc);
+          }
+          break;
+      }
+    }
+
+    /** Walk along the row from col toward toCol (both included) while the cells hold the liquid.
+     * @return Column of the first cell that doesn't hold it, or -1 if they all do.
+     */
+    private int runEnd(int row, int col, int type, int toCol) {
+      if (runs != null)
+        return runs.runEnd(row, col, type, toCol);
+      int step = toCol < col ? -1 : 1;
+      for (int c = col, index = row * numCols + col; c != toCol + step; c += step, index += step)
+        if (cells[index] != type)
+          return c;
+      return -1;
+    }
+
+    /** Randomly select one of the 3 * 3 areas that is adjacent to the object.
+     * @return Index of the selected cell (row * numCols + col); the object itself if the area is out of the bound.
+     */
+    int surroundCheck(int row, int col) {
+      int k = rng.nextInt(9); // Randomly select the area.
+      int newRow = row + SURROUND_ROWS[k];
+      int newCol = col + SURROUND_COLS[k];
+      // Check if newLoc is out of the bound.
+      if (newRow < 0 || newRow > numRows - 1 || newCol < 0 || newCol > numCols - 1)
+        return row * numCols + col;
+      return row * numCols + col + surroundOffsets[k];
+    }
+
+    /** This method will call a random number with a range of 1 ~ interval. If the number is 1, this method will return true; otherwise, it will return false.
+     * @param interval High interval will increase the delay.
+     * @return boolean; it will return true if random number is 1, otherwise, return false.
+     */
+    boolean delay(int interval) {
+      return rng.chance(interval);
+    }
+  }
+
+  // Appends to a growable list
+  private static int[] push(int[] list, int count, int value) {
+    if (count == list.length)
+      list = Arrays.copyOf(list, count * 2);
+    list[count] = value;
+    return list;
+  }
+}
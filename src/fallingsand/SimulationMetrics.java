@@ -0,0 +1,228 @@
+package fallingsand;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+/**
+ * SimulationMetrics.java: counters for what the engine and the window are doing, shown over JMX
+ * and optionally printed every few seconds.
+ * Nothing here is synchronized: the engine's workers count into their own arrays and add them
+ * to the LongAdders once per tick, and the window's counters are LongAdders too.
+ * close() stops the sampler thread (and the logging) and takes the metrics off JMX.
+ *
+ * @author Jun Park
+ */
+public class SimulationMetrics implements SimulationMetricsMBean, Closeable {
+  private static final int TYPES = Interactions.TYPES;
+  private static final AtomicInteger NEXT_ID = new AtomicInteger(); // So every registered instance gets its own name.
+
+  private final SimulationEngine engine;
+  private final LongAdder updates = new LongAdder();
+  private final LongAdder effective = new LongAdder();
+  private final LongAdder[] updatesByType = new LongAdder[TYPES];
+  private final LongAdder[] nanosByType = new LongAdder[TYPES];
+  private final LongAdder frames = new LongAdder();
+  private final LongAdder renderNanos = new LongAdder();
+  private final LongAdder repaints = new LongAdder();
+  private final LongAdder mouseEvents = new LongAdder();
+
+  // Rates over the last second, updated by the sampler thread
+  private volatile double stepsPerSecond, updatesPerSecond, framesPerSecond, repaintsPerSecond;
+  private long lastSteps, lastUpdates, lastFrames, lastRepaints;
+  private long lastSample = System.nanoTime();
+  private final ScheduledExecutorService sampler;
+  private ObjectName name; // Null unless registered.
+
+  /** Counters for the engine; they count once attached with SimulationEngine.setMetrics(). */
+  public SimulationMetrics(SimulationEngine engine) {
+    this.engine = engine;
+    for (int type = 0; type < TYPES; type++) {
+      updatesByType[type] = new LongAdder();
+      nanosByType[type] = new LongAdder();
+    }
+    sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sampler.scheduleAtFixedRate(this::sample, 1, 1, TimeUnit.SECONDS);
+  }
+
+  /** Show the metrics over JMX as fallingsand:type=Simulation,id=n, with an n of their own.
+   *  @return The name they were registered under.
+   */
+  public ObjectName register() {
+    try {
+      ObjectName name = new ObjectName("fallingsand:type=Simulation,id=" + NEXT_ID.getAndIncrement());
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+      this.name = name;
+      return name;
+    } catch (JMException e) {
+      throw new IllegalStateException("Could not register the metrics", e);
+    }
+  }
+
+  /** Stop sampling and logging, and take the metrics off JMX. Waits for the sampler thread to end. */
+  public void close() {
+    sampler.shutdownNow();
+    try {
+      sampler.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (name != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      } catch (JMException e) {
+        throw new IllegalStateException("Could not unregister the metrics", e);
+      }
+      name = null;
+    }
+  }
+
+  /** Print a line with the rates every periodSeconds. */
+  public void log(int periodSeconds) {
+    sampler.scheduleAtFixedRate(() -> System.out.println(this), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+  }
+
+  // Called by the engine's workers, with the counts since their last call
+  void addUpdates(long[] byType, long[] nanos, long effectiveUpdates) {
+    long total = 0;
+    for (int type = 0; type < TYPES; type++) {
+      if (byType[type] != 0) {
+        updatesByType[type].add(byType[type]);
+        total += byType[type];
+      }
+      if (nanos[type] != 0)
+        nanosByType[type].add(nanos[type]);
+    }
+    updates.add(total);
+    effective.add(effectiveUpdates);
+  }
+
+  /** A frame took nanos to render. */
+  public void rendered(long nanos) {
+    frames.increment();
+    renderNanos.add(nanos);
+  }
+
+  /** The window painted. */
+  public void repainted() {
+    repaints.increment();
+  }
+
+  /** A mouse event reached the engine. */
+  public void mouseEvent() {
+    mouseEvents.increment();
+  }
+
+  private void sample() {
+    long now = System.nanoTime();
+    double seconds = (now - lastSample) / 1e9;
+    long steps = engine.getStepCount();
+    long updates = getUpdates();
+    long frames = getFrames();
+    long repaints = getRepaints();
+    stepsPerSecond = (steps - lastSteps) / seconds;
+    updatesPerSecond = (updates - lastUpdates) / seconds;
+    framesPerSecond = (frames - lastFrames) / seconds;
+    repaintsPerSecond = (repaints - lastRepaints) / seconds;
+    lastSample = now;
+    lastSteps = steps;
+    lastUpdates = updates;
+    lastFrames = frames;
+    lastRepaints = repaints;
+  }
+
+  public long getSteps() {
+    return engine.getStepCount();
+  }
+
+  public double getStepsPerSecond() {
+    return stepsPerSecond;
+  }
+
+  public long getUpdates() {
+    return updates.sum();
+  }
+
+  public long getEffectiveUpdates() {
+    return effective.sum();
+  }
+
+  public long getNoOpUpdates() {
+    return getUpdates() - getEffectiveUpdates();
+  }
+
+  public String[] getTypeNames() {
+    String[] names = new String[TYPES];
+    for (int type = 0; type < TYPES; type++)
+      names[type] = SimulationEngine.typeName(type);
+    return names;
+  }
+
+  public long[] getUpdatesByType() {
+    long[] counts = new long[TYPES];
+    for (int type = 0; type < TYPES; type++)
+      counts[type] = updatesByType[type].sum();
+    return counts;
+  }
+
+  public long[] getNanosByType() {
+    long[] nanos = new long[TYPES];
+    for (int type = 0; type < TYPES; type++)
+      nanos[type] = nanosByType[type].sum();
+    return nanos;
+  }
+
+  public long[] getPopulationByType() {
+    long[] population = new long[TYPES];
+    for (int type = 0; type < TYPES; type++)
+      population[type] = engine.getPopulation(type);
+    return population;
+  }
+
+  public long getFrames() {
+    return frames.sum();
+  }
+
+  public double getFramesPerSecond() {
+    return framesPerSecond;
+  }
+
+  public double getAverageRenderMillis() {
+    long frames = getFrames();
+    return frames == 0 ? 0 : renderNanos.sum() / 1e6 / frames;
+  }
+
+  public long getRepaints() {
+    return repaints.sum();
+  }
+
+  public double getRepaintsPerSecond() {
+    return repaintsPerSecond;
+  }
+
+  public long getMouseEvents() {
+    return mouseEvents.sum();
+  }
+
+  /** @return The rates and the busiest types, in one line. */
+  public String toString() {
+    long updates = getUpdates();
+    long[] byType = getUpdatesByType();
+    long[] nanos = getNanosByType();
+    StringBuilder types = new StringBuilder();
+    for (int type = 0; type < TYPES; type++)
+      if (byType[type] * 20 >= updates && updates > 0) // Types with at least 5% of the updates.
+        types.append(String.format(" %s %.0f%% (%.0f ns)", SimulationEngine.typeName(type), 100.0 * byType[type] / updates,
+                                   (double)nanos[type] / byType[type]));
+    return String.format("%,.0f steps/s, %,.0f updates/s (%.0f%% effective), %.0f frames/s (%.2f ms to render), "
+                         + "%.0f repaints/s, %,d mouse events;%s",
+                         stepsPerSecond, updatesPerSecond, updates == 0 ? 0 : 100.0 * getEffectiveUpdates() / updates,
+                         framesPerSecond, getAverageRenderMillis(), repaintsPerSecond, getMouseEvents(), types);
+  }
+}
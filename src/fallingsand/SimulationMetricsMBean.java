@@ -0,0 +1,45 @@
+package fallingsand;
+
+/**
+ * SimulationMetricsMBean.java: what SimulationMetrics shows over JMX (e.g. in JConsole, under "fallingsand").
+ * Totals count from the start; the rates are over the last second.
+ *
+ * @author Jun Park
+ */
+public interface SimulationMetricsMBean {
+  long getSteps();
+
+  double getStepsPerSecond();
+
+  /** Particles the rules looked at; steps that land in sleeping chunks are skipped and not counted. */
+  long getUpdates();
+
+  /** Updates that changed the board. */
+  long getEffectiveUpdates();
+
+  /** Updates that changed nothing (EMPTY, a settled particle, or a delay that said no). */
+  long getNoOpUpdates();
+
+  String[] getTypeNames();
+
+  /** Updates of each particle type, indexed like getTypeNames(). */
+  long[] getUpdatesByType();
+
+  /** Estimated time spent updating each particle type (from a sample of the updates). */
+  long[] getNanosByType();
+
+  /** Cells of each particle type on the board now, indexed like getTypeNames(). */
+  long[] getPopulationByType();
+
+  long getFrames();
+
+  double getFramesPerSecond();
+
+  double getAverageRenderMillis();
+
+  long getRepaints();
+
+  double getRepaintsPerSecond();
+
+  long getMouseEvents();
+}
@@ -0,0 +1,203 @@
+package fallingsand;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static fallingsand.SimulationEngine.*;
+
+/**
+ * Snapshot.java: saves and loads the board.
+ * The file is MAGIC, VERSION, the size, a type table (the name of every type id used in the file,
+ * so a snapshot still loads after types are added or renumbered), and then every row as runs of
+ * (type, length). Numbers are variable-length ints, like in SessionRecorder.
+ * Files are written and read through a FileChannel with one buffer.
+ *
+ * @author Jun Park
+ */
+public final class Snapshot {
+  static final int MAGIC = 0x46534E50; // "FSNP"
+  static final int VERSION = 1;
+
+  private static final int BUFFER_BYTES = 1 << 20;
+
+  private Snapshot() {
+  }
+
+  /** Save a copy of the engine's board. */
+  public static void save(SimulationEngine engine, File file) throws IOException {
+    write(engine.getCells(), engine.getNumRows(), engine.getNumCols(), file);
+  }
+
+  /** Save a board (cells row by row, like SimulationEngine.getCells()). The file is written next to
+   *  the target and then moved over it, so a crash never leaves half a snapshot behind.
+   */
+  public static void write(byte[] cells, int numRows, int numCols, File file) throws IOException {
+    Path target = file.toPath().toAbsolutePath();
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+      Output out = new Output(channel);
+      out.ensure(12);
+      out.buffer.putInt(MAGIC);
+      out.buffer.putInt(VERSION);
+      out.putVarInt(numRows);
+      out.putVarInt(numCols);
+      out.putVarInt(Interactions.TYPES);
+      for (int type = 0; type < Interactions.TYPES; type++) {
+        byte[] bytes = typeName(type).getBytes(StandardCharsets.US_ASCII);
+        out.putVarInt(bytes.length);
+        out.ensure(bytes.length);
+        out.buffer.put(bytes);
+      }
+      for (int row = 0; row < numRows; row++) {
+        int index = row * numCols;
+        int end = index + numCols;
+        while (index < end) {
+          byte type = cells[index];
+          int start = index;
+          while (++index < end && cells[index] == type)
+            ;
+          out.ensure(1);
+          out.buffer.put(type);
+          out.putVarInt(index - start);
+        }
+      }
+      out.flush();
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Load a snapshot into the engine, replacing its board. A snapshot of another size fills the
+   *  top left corner (the rest is EMPTY) or is cut off at the engine's edges.
+   */
+  public static void load(SimulationEngine engine, File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      Input in = new Input(channel);
+      in.require(8);
+      if (in.buffer.getInt() != MAGIC)
+        throw new IOException(file + " is not a snapshot");
+      int version = in.buffer.getInt();
+      if (version != VERSION)
+        throw new IOException(file + " has version " + version + ", expected " + VERSION);
+      int numRows = in.getVarInt();
+      int numCols = in.getVarInt();
+      byte[] types = new byte[in.getVarInt()]; // Type in the file -> our type.
+      for (int k = 0; k < types.length; k++) {
+        byte[] bytes = new byte[in.getVarInt()];
+        in.require(bytes.length);
+        in.buffer.get(bytes);
+        int type = typeNamed(new String(bytes, StandardCharsets.US_ASCII));
+        types[k] = (byte)(type < 0 || type == CLEAR ? EMPTY : type); // Unknown types are lost.
+      }
+
+      int engineRows = engine.getNumRows();
+      int engineCols = engine.getNumCols();
+      byte[] cells = new byte[engineRows * engineCols];
+      for (int row = 0; row < numRows; row++)
+        if (!readRow(in, types, cells, row < engineRows ? row * engineCols : -1, Math.min(numCols, engineCols), numCols))
+          throw new IOException(file + " is damaged at row " + row);
+      engine.setCells(cells);
+    }
+  }
+
+  // Decodes the runs of one row into cells from start (or skips them if start is -1).
+  // Only the first width cells are kept. Returns false if the runs don't add up to numCols.
+  private static boolean readRow(Input in, byte[] types, byte[] cells, int start, int width, int numCols)
+      throws IOException {
+    ByteBuffer buffer = in.buffer;
+    byte[] data = buffer.array();
+    for (int col = 0; col < numCols; ) {
+      int fileType, length;
+      int p = buffer.position();
+      if (buffer.limit() - p >= 2 && data[p + 1] >= 0) { // A run up to 127 long: the common case.
+        fileType = data[p] & 0xFF;
+        length = data[p + 1];
+        buffer.position(p + 2);
+      } else {
+        in.require(1);
+        fileType = buffer.get() & 0xFF;
+        length = in.getVarInt();
+      }
+      if (fileType >= types.length || length <= 0 || col + length > numCols)
+        return false;
+      if (start >= 0 && col < width) {
+        byte type = types[fileType];
+        int to = start + Math.min(col + length, width);
+        for (int index = start + col; index < to; index++)
+          cells[index] = type;
+      }
+      col += length;
+    }
+    return true;
+  }
+
+  // Buffers the bytes to a channel
+  private static class Output {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    final WritableByteChannel channel;
+
+    Output(WritableByteChannel channel) {
+      this.channel = channel;
+    }
+
+    // Makes room for n more bytes
+    void ensure(int n) throws IOException {
+      if (buffer.remaining() < n)
+        flush();
+    }
+
+    void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+      buffer.clear();
+    }
+
+    // 7 bits per byte, high bit set if more bytes follow
+    void putVarInt(int value) throws IOException {
+      ensure(5);
+      while ((value & ~0x7F) != 0) {
+        buffer.put((byte)((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      buffer.put((byte)value);
+    }
+  }
+
+  // Reads a channel through a buffer (a heap one, so the runs can be decoded straight from its array)
+  private static class Input {
+    final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    final ReadableByteChannel channel;
+
+    Input(ReadableByteChannel channel) {
+      this.channel = channel;
+      buffer.flip(); // Empty.
+    }
+
+    // Makes sure the next n bytes are in the buffer
+    void require(int n) throws IOException {
+      if (buffer.remaining() >= n)
+        return;
+      buffer.compact();
+      while (buffer.position() < n)
+        if (channel.read(buffer) < 0)
+          throw new EOFException();
+      buffer.flip();
+    }
+
+    int getVarInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        require(1);
+        int b = buffer.get();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0)
+          return value;
+      }
+    }
+  }
+}
@@ -0,0 +1,297 @@
+package fallingsand;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static fallingsand.SimulationEngine.*;
+
+/**
+ * SparseWorld.java: a world with no edges, stored chunk by chunk (CHUNK_SIZE * CHUNK_SIZE cells).
+ * Rows and columns go from MIN to MAX: a chunk is keyed by its row and column as two ints, and the
+ * lowest chunk row is left out because its keys would collide with FREE.
+ * Chunks that were never touched are EMPTY and take no space. At most maxResident chunks are
+ * kept on the heap; the others live in a memory-mapped backing file and are paged back in when
+ * they are read, so the world can be far larger than the memory.
+ * A SimulationEngine runs a window of the world: load() copies the window into the engine and
+ * store() copies it back, so moving the view is a store() at the old place and a load() at the new one
+ * (see WorldWindow).
+ *
+ * The file is a header (MAGIC, VERSION, number of slots) and then slots of a chunk key and its cells.
+ * It can be opened again later to continue the same world.
+ *
+ * @author Jun Park
+ */
+public class SparseWorld implements Closeable {
+  static final int MAGIC = 0x46535357; // "FSSW"
+  static final int VERSION = 1;
+
+  private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+  private static final int HEADER_BYTES = 16;
+  private static final int SLOT_BYTES = 8 + CHUNK_CELLS; // Key, then the cells row by row.
+  private static final int SEGMENT_SLOTS = 1 << 16; // Slots per mapping (about 67 MB).
+  private static final long FREE = Long.MIN_VALUE; // Key of a slot that was given back: chunk row Integer.MIN_VALUE, column 0.
+  public static final long MIN = (Integer.MIN_VALUE + 1L) << CHUNK_SHIFT; // Lowest row and column in the world...
+  public static final long MAX = ((long)Integer.MAX_VALUE << CHUNK_SHIFT) + CHUNK_SIZE - 1; // ... and the highest.
+
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+  private final LongMap slots = new LongMap(); // Chunk key -> slot in the file.
+  private int slotCount;
+  private int[] freeSlots = new int[16];
+  private int freeCount;
+
+  // Resident chunks, replaced with the clock algorithm
+  private final LongMap resident = new LongMap(); // Chunk key -> index in pool.
+  private final byte[][] pool;
+  private final long[] poolKeys;
+  private final boolean[] referenced; // Used since the clock hand last passed.
+  private final boolean[] modified; // Changed since it was paged in.
+  private int poolCount;
+  private int hand;
+
+  /** Open the world in the file, or start an empty one if the file doesn't exist.
+   * @param maxResident Number of chunks kept on the heap (each is CHUNK_SIZE * CHUNK_SIZE bytes).
+   */
+  public SparseWorld(File file, int maxResident) throws IOException {
+    if (maxResident < 1)
+      throw new IllegalArgumentException("maxResident must be at least 1");
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                               StandardOpenOption.CREATE);
+    boolean created = channel.size() == 0;
+    header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+    if (created) {
+      header.putInt(0, MAGIC);
+      header.putInt(4, VERSION);
+    } else {
+      if (header.getInt(0) != MAGIC)
+        throw new IOException(file + " is not a world file");
+      if (header.getInt(4) != VERSION)
+        throw new IOException(file + " has version " + header.getInt(4) + ", expected " + VERSION);
+      slotCount = header.getInt(8);
+      for (int slot = 0; slot < slotCount; slot++) {
+        long key = segment(slot).getLong(offset(slot));
+        if (key == FREE)
+          freeSlots = push(freeSlots, freeCount++, slot);
+        else
+          slots.put(key, slot);
+      }
+    }
+    pool = new byte[maxResident][];
+    poolKeys = new long[maxResident];
+    referenced = new boolean[maxResident];
+    modified = new boolean[maxResident];
+  }
+
+  /** @return Particle type at the given location. */
+  public int get(long row, long col) {
+    checkCell(row, col);
+    int index = find(key(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT), false);
+    if (index < 0)
+      return EMPTY;
+    return pool[index][cellOf(row, col)];
+  }
+
+  /** Place a particle at the given location. */
+  public void set(long row, long col, int type) {
+    checkCell(row, col);
+    int index = find(key(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT), type != EMPTY);
+    if (index < 0)
+      return; // Already EMPTY.
+    pool[index][cellOf(row, col)] = (byte)type;
+    modified[index] = true;
+  }
+
+  /** Copy the window with its top left corner at (top, left) into the engine, replacing all of its board.
+   *  top and left must be multiples of CHUNK_SIZE.
+   */
+  public void load(SimulationEngine engine, long top, long left) {
+    checkWindow(engine, top, left);
+    int numRows = engine.getNumRows();
+    int numCols = engine.getNumCols();
+    byte[] cells = new byte[numRows * numCols]; // All EMPTY, like the chunks that were never touched.
+    for (int startRow = 0; startRow < numRows; startRow += CHUNK_SIZE) {
+      for (int startCol = 0; startCol < numCols; startCol += CHUNK_SIZE) {
+        int index = find(key((top + startRow) >> CHUNK_SHIFT, (left + startCol) >> CHUNK_SHIFT), false);
+        if (index < 0)
+          continue;
+        byte[] chunk = pool[index];
+        int height = Math.min(CHUNK_SIZE, numRows - startRow);
+        int width = Math.min(CHUNK_SIZE, numCols - startCol);
+        for (int r = 0; r < height; r++)
+          System.arraycopy(chunk, r * CHUNK_SIZE, cells, (startRow + r) * numCols + startCol, width);
+      }
+    }
+    engine.setCells(cells); // One bulk copy: the counts, the RunIndex and the chunks are set up once.
+  }
+
+  /** Copy the engine's board back into the window with its top left corner at (top, left). */
+  public void store(SimulationEngine engine, long top, long left) {
+    checkWindow(engine, top, left);
+    byte[] cells = engine.getCells();
+    int numRows = engine.getNumRows();
+    int numCols = engine.getNumCols();
+    for (int startRow = 0; startRow < numRows; startRow += CHUNK_SIZE) {
+      for (int startCol = 0; startCol < numCols; startCol += CHUNK_SIZE) {
+        int height = Math.min(CHUNK_SIZE, numRows - startRow);
+        int width = Math.min(CHUNK_SIZE, numCols - startCol);
+        boolean empty = true;
+        for (int r = 0; r < height && empty; r++)
+          for (int c = 0; c < width && empty; c++)
+            empty = cells[(startRow + r) * numCols + startCol + c] == EMPTY;
+        int index = find(key((top + startRow) >> CHUNK_SHIFT, (left + startCol) >> CHUNK_SHIFT), !empty);
+        if (index < 0)
+          continue; // EMPTY before and after.
+        byte[] chunk = pool[index];
+        for (int r = 0; r < height; r++)
+          System.arraycopy(cells, (startRow + r) * numCols + startCol, chunk, r * CHUNK_SIZE, width);
+        modified[index] = true;
+      }
+    }
+  }
+
+  /** @return Number of chunks on the heap. */
+  public int getResidentCount() {
+    return poolCount;
+  }
+
+  /** @return Number of chunks in the backing file. */
+  public int getStoredCount() {
+    return slots.size();
+  }
+
+  /** Write every changed chunk to the file (they stay on the heap). */
+  public void flush() throws IOException {
+    for (int index = 0; index < poolCount; index++)
+      if (modified[index])
+        write(index);
+    header.putInt(8, slotCount);
+    header.force();
+    for (MappedByteBuffer segment : segments)
+      segment.force();
+  }
+
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  // Index in pool of the chunk, paging it in if needed; -1 if it was never touched and create is false
+  private int find(long key, boolean create) {
+    int index = resident.get(key, -1);
+    if (index >= 0) {
+      referenced[index] = true;
+      return index;
+    }
+    int slot = slots.get(key, -1);
+    if (slot < 0 && !create)
+      return -1;
+    index = poolCount < pool.length ? poolCount++ : evict();
+    if (pool[index] == null)
+      pool[index] = new byte[CHUNK_CELLS];
+    if (slot >= 0) {
+      ByteBuffer buffer = segment(slot).duplicate();
+      buffer.position(offset(slot) + 8);
+      buffer.get(pool[index]);
+    } else {
+      Arrays.fill(pool[index], (byte)EMPTY);
+    }
+    poolKeys[index] = key;
+    referenced[index] = true;
+    modified[index] = false;
+    resident.put(key, index);
+    return index;
+  }
+
+  // Frees the first chunk the clock hand finds that wasn't used since the hand last passed
+  private int evict() {
+    while (referenced[hand]) {
+      referenced[hand] = false;
+      hand = (hand + 1) % pool.length;
+    }
+    int index = hand;
+    hand = (hand + 1) % pool.length;
+    if (modified[index])
+      write(index);
+    resident.remove(poolKeys[index]);
+    return index;
+  }
+
+  // Writes a resident chunk to its slot; an EMPTY chunk gives its slot back instead
+  private void write(int index) {
+    long key = poolKeys[index];
+    int slot = slots.get(key, -1);
+    byte[] chunk = pool[index];
+    boolean empty = true;
+    for (int k = 0; k < CHUNK_CELLS && empty; k++)
+      empty = chunk[k] == EMPTY;
+    modified[index] = false;
+    if (empty) {
+      if (slot >= 0) {
+        segment(slot).putLong(offset(slot), FREE);
+        slots.remove(key);
+        freeSlots = push(freeSlots, freeCount++, slot);
+      }
+      return;
+    }
+    if (slot < 0) {
+      slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+      slots.put(key, slot);
+    }
+    ByteBuffer buffer = segment(slot).duplicate();
+    buffer.position(offset(slot));
+    buffer.putLong(key);
+    buffer.put(chunk);
+  }
+
+  // The mapping that holds the slot; maps (and grows the file) on first use
+  private MappedByteBuffer segment(int slot) {
+    int segment = slot / SEGMENT_SLOTS;
+    try {
+      while (segments.size() <= segment)
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                                 HEADER_BYTES + (long)segments.size() * SEGMENT_SLOTS * SLOT_BYTES,
+                                 (long)SEGMENT_SLOTS * SLOT_BYTES));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return segments.get(segment);
+  }
+
+  private static int offset(int slot) {
+    return (slot % SEGMENT_SLOTS) * SLOT_BYTES;
+  }
+
+  private static long key(long chunkRow, long chunkCol) {
+    return chunkRow << 32 | (chunkCol & 0xFFFFFFFFL);
+  }
+
+  private static int cellOf(long row, long col) {
+    return (int)(row & (CHUNK_SIZE - 1)) * CHUNK_SIZE + (int)(col & (CHUNK_SIZE - 1));
+  }
+
+  private static void checkCell(long row, long col) {
+    if (row < MIN || row > MAX || col < MIN || col > MAX)
+      throw new IllegalArgumentException("(" + row + ", " + col + ") is outside the world");
+  }
+
+  private static void checkWindow(SimulationEngine engine, long top, long left) {
+    if ((top & (CHUNK_SIZE - 1)) != 0 || (left & (CHUNK_SIZE - 1)) != 0)
+      throw new IllegalArgumentException("The window's corner must be on a chunk boundary");
+    checkCell(top, left);
+    checkCell(top + engine.getNumRows() - 1, left + engine.getNumCols() - 1);
+  }
+
+  private static int[] push(int[] list, int count, int value) {
+    if (count == list.length)
+      list = Arrays.copyOf(list, count * 2);
+    list[count] = value;
+    return list;
+  }
+}
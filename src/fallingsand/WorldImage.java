@@ -0,0 +1,103 @@
+package fallingsand;
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.stream.*;
+import javax.imageio.*;
+
+import static fallingsand.SimulationEngine.*;
+
+/**
+ * WorldImage.java: turns a picture into a board and back, one pixel per cell.
+ * Importing matches every pixel to the particle with the nearest color in the Palette (at any
+ * noise level, so screenshots of the game work too). Exporting draws every cell in its base color,
+ * so an exported image imports back into the same board.
+ * Importing converts the rows in parallel; the color matching is one table lookup per pixel.
+ * Exporting runs on the calling thread only, since FrameCapture already spreads the frames over its encoder threads.
+ *
+ * @author Jun Park
+ */
+public final class WorldImage {
+  private static final int TYPES_WITH_COLOR = CLEAR; // Every type but CLEAR, which looks like EMPTY.
+  private static final int BITS = 5; // Bits per channel of the lookup table.
+  private static final byte[] NEAREST = new byte[1 << 3 * BITS]; // Quantized RGB -> type.
+  private static final LongMap EXACT = new LongMap(); // Palette color -> type, so the palette's own colors never miss.
+
+  static {
+    for (int type = TYPES_WITH_COLOR - 1; type >= 0; type--) // EMPTY last, so it wins ties (it shares a color with CLEAR).
+      for (int noise = 0; noise < Palette.NOISE_LEVELS; noise++)
+        EXACT.put(Palette.color(type, noise) & 0xFFFFFF, type);
+    int half = 1 << (7 - BITS); // Center of a bucket.
+    for (int q = 0; q < NEAREST.length; q++) {
+      int r = (q >> 2 * BITS << 8 - BITS) + half;
+      int g = ((q >> BITS & (1 << BITS) - 1) << 8 - BITS) + half;
+      int b = ((q & (1 << BITS) - 1) << 8 - BITS) + half;
+      int best = EMPTY;
+      int bestDistance = Integer.MAX_VALUE;
+      for (int type = 0; type < TYPES_WITH_COLOR; type++) {
+        int levels = Palette.shimmers(type) ? Palette.NOISE_LEVELS : 1; // The others look the same at every level.
+        for (int noise = 0; noise < levels; noise++) {
+          int color = Palette.color(type, noise);
+          int dr = (color >> 16 & 0xFF) - r;
+          int dg = (color >> 8 & 0xFF) - g;
+          int db = (color & 0xFF) - b;
+          int distance = dr * dr + dg * dg + db * db;
+          if (distance < bestDistance) {
+            bestDistance = distance;
+            best = type;
+          }
+        }
+      }
+      NEAREST[q] = (byte)best;
+    }
+  }
+
+  private WorldImage() {
+  }
+
+  /** @return The particle type whose color is nearest to the packed RGB. */
+  public static int typeOf(int rgb) {
+    int type = EXACT.get(rgb & 0xFFFFFF, -1);
+    if (type >= 0)
+      return type;
+    int q = (rgb >> 16 + 8 - BITS & (1 << BITS) - 1) << 2 * BITS
+            | (rgb >> 8 + 8 - BITS & (1 << BITS) - 1) << BITS
+            | (rgb >> 8 - BITS & (1 << BITS) - 1);
+    return NEAREST[q];
+  }
+
+  /** Replace the engine's board with the picture. A picture of another size fills the
+   *  top left corner (the rest is EMPTY) or is cut off at the engine's edges.
+   */
+  public static void load(SimulationEngine engine, File file) throws IOException {
+    BufferedImage image = ImageIO.read(file);
+    if (image == null)
+      throw new IOException(file + " is not an image");
+    int numRows = engine.getNumRows();
+    int numCols = engine.getNumCols();
+    int width = Math.min(image.getWidth(), numCols);
+    int height = Math.min(image.getHeight(), numRows);
+    byte[] cells = new byte[numRows * numCols];
+    IntStream.range(0, height).parallel().forEach(row -> {
+      int[] pixels = image.getRGB(0, row, width, 1, null, 0, width);
+      for (int col = 0; col < width; col++)
+        cells[row * numCols + col] = (byte)typeOf(pixels[col]);
+    });
+    engine.setCells(cells);
+  }
+
+  /** Save the board as a PNG, one pixel per cell. */
+  public static void save(SimulationEngine engine, File file) throws IOException {
+    write(engine.getCells(), engine.getNumRows(), engine.getNumCols(), file);
+  }
+
+  /** Save a board (cells row by row, like SimulationEngine.getCells()) as a PNG. */
+  public static void write(byte[] cells, int numRows, int numCols, File file) throws IOException {
+    BufferedImage image = new BufferedImage(numCols, numRows, BufferedImage.TYPE_INT_RGB);
+    int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    for (int index = 0; index < pixels.length; index++)
+      pixels[index] = Palette.baseColor(cells[index]);
+    if (!ImageIO.write(image, "png", file))
+      throw new IOException("No PNG writer");
+  }
+}
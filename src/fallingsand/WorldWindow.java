@@ -0,0 +1,60 @@
+package fallingsand;
+
+import java.io.*;
+
+import static fallingsand.SimulationEngine.*;
+
+/**
+ * WorldWindow.java: the part of a SparseWorld an engine simulates, which can move around the world.
+ * Moving stores the board at the old place and loads it from the new one; the world pages the chunks
+ * in and out as they are needed, so the window can go anywhere in the world.
+ * Outside the window the world stands still.
+ *
+ * @author Jun Park
+ */
+public class WorldWindow implements Closeable {
+  private final SparseWorld world;
+  private final SimulationEngine engine;
+  private long top, left; // Top left corner of the window in the world, on a chunk boundary.
+
+  /** Load the window with its top left corner at (top, left) into the engine.
+   *  top and left must be multiples of CHUNK_SIZE.
+   */
+  public WorldWindow(SparseWorld world, SimulationEngine engine, long top, long left) {
+    this.world = world;
+    this.engine = engine;
+    world.load(engine, top, left);
+    this.top = top;
+    this.left = left;
+  }
+
+  /** Move the window by the given number of chunks down and to the right (negative: up and to the left).
+   *  @throws IllegalArgumentException If the window would leave the world (see SparseWorld.MIN and MAX); it stays put.
+   */
+  public void moveBy(int chunkRows, int chunkCols) {
+    if (chunkRows == 0 && chunkCols == 0)
+      return;
+    long newTop = top + (long)chunkRows * CHUNK_SIZE, newLeft = left + (long)chunkCols * CHUNK_SIZE;
+    world.store(engine, top, left);
+    world.load(engine, newTop, newLeft); // Throws before it changes anything if the new place is outside the world.
+    top = newTop;
+    left = newLeft;
+  }
+
+  /** @return Row of the world at the window's top edge. */
+  public long getTop() {
+    return top;
+  }
+
+  /** @return Column of the world at the window's left edge. */
+  public long getLeft() {
+    return left;
+  }
+
+  /** Store the window and close the world. */
+  public void close() throws IOException {
+    try (world) {
+      world.store(engine, top, left);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package fallingsand;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdaptiveStepperTest.java: the stepper runs the steps asked for while they fit, caps them at what fits in
+ * the tick's time left after drawing when they don't, and doesn't save up the steps it cut.
+ *
+ * @author Jun Park
+ */
+class AdaptiveStepperTest {
+  private static final long TICK = 2_000_000, FRAME = 16_000_000; // 2 ms ticks, 16 ms frames.
+
+  @Test
+  void cheapStepsRunTheTarget() {
+    AdaptiveStepper stepper = measured(10, 0);
+    long total = 0;
+    for (int tick = 0; tick < 1000; tick++)
+      total += stepper.stepsFor(1_500_250); // 3000.5 steps a tick: the halves add up.
+    assertEquals(3_000_500, total, 1);
+  }
+
+  @Test
+  void expensiveStepsAreCapped() {
+    AdaptiveStepper stepper = measured(1000, 0);
+    for (int tick = 0; tick < 10; tick++)
+      assertEquals(1600, stepper.stepsFor(10_000_000), 1); // 80% of 2 ms at 1 us a step, every tick.
+  }
+
+  @Test
+  void drawingTakesItsShare() {
+    assertEquals(1200, measured(1000, FRAME / 4).stepsFor(10_000_000), 1); // A quarter of the time goes to drawing.
+    assertEquals(800, measured(1000, FRAME).stepsFor(10_000_000), 1); // At most half of it does.
+  }
+
+  @Test
+  void pollReportsTheAchievedRates() {
+    AdaptiveStepper stepper = new AdaptiveStepper(TICK, FRAME);
+    long start = System.nanoTime();
+    stepper.ranSteps(5000, 1_000_000);
+    stepper.rendered(1_000_000);
+    assertFalse(stepper.poll(start - 1_000_000_000));
+    assertTrue(stepper.poll(start + 1_000_000_000));
+    assertEquals(5000, stepper.getStepsPerSecond(), 50);
+    assertEquals(1, stepper.getFramesPerSecond(), 0.01);
+  }
+
+  // A stepper whose running averages have settled on steps of stepNanos and frames of frameNanos
+  private static AdaptiveStepper measured(long stepNanos, long frameNanos) {
+    AdaptiveStepper stepper = new AdaptiveStepper(TICK, FRAME);
+    for (int k = 0; k < 500; k++) {
+      stepper.ranSteps(1000, 1000 * stepNanos);
+      stepper.rendered(frameNanos);
+    }
+    return stepper;
+  }
+}
@@ -0,0 +1,47 @@
+package fallingsand;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Boards.java: boards for the tests, and a check that two engines hold the same one.
+ *
+ * @author Jun Park
+ */
+final class Boards {
+  private Boards() {
+  }
+
+  // A board with a bit of everything, run for a few updates per cell so it looks like a played one
+  static SimulationEngine played(int numRows, int numCols, long seed) {
+    SimulationEngine engine = new SimulationEngine(numRows, numCols, seed);
+    engine.fillRect(numRows - 10, 0, 10, numCols, STONE);
+    engine.fillRect(numRows / 2, numCols / 4, 4, numCols / 2, METAL);
+    engine.fillCircle(numRows / 4, numCols / 3, numRows / 6, SAND);
+    engine.fillCircle(numRows / 4, 2 * numCols / 3, numRows / 6, WATER);
+    engine.fillRect(numRows - 20, 5, 8, numCols / 3, OIL);
+    engine.fillRect(10, numCols - 20, 10, 10, WOOD);
+    engine.fillCircle(numRows - 15, numCols / 2, 3, LAVA);
+    engine.set(5, 5, TNT);
+    engine.set(6, 6, ICE);
+    engine.tick(5L * numRows * numCols);
+    return engine;
+  }
+
+  // Every cell a random type (but CLEAR), so runs are short
+  static SimulationEngine noise(int numRows, int numCols, long seed) {
+    SimulationEngine engine = new SimulationEngine(numRows, numCols, seed);
+    Rng rng = new Rng(seed);
+    byte[] cells = new byte[numRows * numCols];
+    for (int i = 0; i < cells.length; i++)
+      cells[i] = (byte)rng.nextInt(CLEAR);
+    engine.setCells(cells);
+    return engine;
+  }
+
+  static void assertSame(SimulationEngine expected, SimulationEngine actual) {
+    assertArrayEquals(expected.getCells(), actual.getCells());
+    for (int type = 0; type < Interactions.TYPES; type++)
+      assertEquals(expected.getPopulation(type), actual.getPopulation(type), typeName(type));
+  }
+}
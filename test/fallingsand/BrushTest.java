@@ -0,0 +1,58 @@
+package fallingsand;
+
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BrushTest.java: circles and strokes that reach past the board's edges are cut off there, even when
+ * their center is off the board.
+ *
+ * @author Jun Park
+ */
+class BrushTest {
+  private static final int ROWS = 100, COLS = 150;
+
+  @Test
+  void circlesPartlyOffTheEdges() {
+    int[][] centers = {{10, 152}, {10, -3}, {-3, 40}, {102, 40}, {-2, -2}, {101, 151}, {50, 149}, {0, 0}};
+    for (int radius = 0; radius <= 6; radius++) {
+      for (int[] center : centers) {
+        SimulationEngine engine = new SimulationEngine(ROWS, COLS, 1);
+        engine.fillCircle(center[0], center[1], radius, SAND);
+        SimulationEngine expected = new SimulationEngine(ROWS, COLS, 1);
+        for (int row = 0; row < ROWS; row++)
+          for (int col = 0; col < COLS; col++)
+            if (inCircle(row - center[0], col - center[1], radius))
+              expected.set(row, col, SAND);
+        assertArrayEquals(expected.getCells(), engine.getCells(), "radius " + radius + " at " + center[0] + ", " + center[1]);
+        assertEquals(expected.getPopulation(SAND), engine.getPopulation(SAND));
+      }
+    }
+  }
+
+  @Test
+  void circlesWellOffTheBoardPaintNothing() {
+    SimulationEngine engine = new SimulationEngine(ROWS, COLS, 1);
+    engine.fillCircle(10, 160, 3, SAND);
+    engine.fillCircle(-10, 10, 3, SAND);
+    engine.stroke(-20, -20, -20, 200, SAND, 4);
+    assertEquals(0, engine.getPopulation(SAND));
+  }
+
+  @Test
+  void strokeAlongTheEdge() {
+    SimulationEngine engine = new SimulationEngine(ROWS, COLS, 1);
+    engine.stroke(-3, 152, 103, 152, WATER, 3); // Only the widest rows of each stamp reach column 149.
+    for (int row = 0; row < ROWS; row++) {
+      assertEquals(WATER, engine.get(row, COLS - 1));
+      assertEquals(EMPTY, engine.get(row, COLS - 2));
+    }
+  }
+
+  // Same test as circle(): the row at distance dr of the center is 2 * sqrt(r * r + r - dr * dr) + 1 cells wide
+  private static boolean inCircle(int dr, int dc, int radius) {
+    return Math.abs(dr) <= radius && Math.abs(dc) <= (int)Math.sqrt(radius * radius + radius - dr * dr);
+  }
+}
@@ -0,0 +1,67 @@
+package fallingsand;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ExplosionTest.java: lit TNT goes off at the next block of steps, but only on the board it was lit on:
+ * replacing, clearing or painting over the board puts the fuse out.
+ *
+ * @author Jun Park
+ */
+class ExplosionTest {
+  private static final int SIZE = 64;
+  private static final int BLOCK = 4096; // SimulationEngine.TICK_BLOCK.
+
+  @Test
+  void litTntGoesOff() {
+    SimulationEngine engine = lit();
+    engine.fillRect(SIZE - 9, 35, 8, 8, STONE); // Within the blast, but not over the lit TNT.
+    engine.tick(BLOCK - engine.getStepCount() % BLOCK);
+    assertTrue(engine.getPopulation(STONE) < 8 * 8, "The blast reached the STONE");
+  }
+
+  @Test
+  void newBoardPutsTheFuseOut() {
+    SimulationEngine engine = lit();
+    byte[] stone = new byte[SIZE * SIZE];
+    Arrays.fill(stone, (byte)STONE);
+    engine.setCells(stone);
+    engine.tick(BLOCK - engine.getStepCount() % BLOCK);
+    assertEquals(SIZE * SIZE, engine.getPopulation(STONE));
+  }
+
+  @Test
+  void clearPutsTheFuseOut() {
+    SimulationEngine engine = lit();
+    engine.clear();
+    engine.fillRect(0, 0, SIZE, SIZE, STONE);
+    engine.tick(BLOCK - engine.getStepCount() % BLOCK);
+    assertEquals(SIZE * SIZE, engine.getPopulation(STONE));
+  }
+
+  @Test
+  void paintingOverPutsTheFuseOut() {
+    SimulationEngine engine = lit();
+    engine.fillRect(0, 0, SIZE, SIZE, STONE);
+    engine.tick(BLOCK - engine.getStepCount() % BLOCK);
+    assertEquals(SIZE * SIZE, engine.getPopulation(STONE));
+  }
+
+  // A board with one TNT next to FIRE, ticked a step at a time until the TNT caught (before the block ends)
+  private static SimulationEngine lit() {
+    for (long seed = 1; ; seed++) {
+      SimulationEngine engine = new SimulationEngine(SIZE, SIZE, seed);
+      engine.fillRect(SIZE - 1, 0, 1, SIZE, METAL);
+      engine.set(SIZE - 2, 32, TNT);
+      engine.set(SIZE - 2, 33, FIRE);
+      while (engine.getStepCount() < BLOCK - 1 && engine.get(SIZE - 2, 32) == TNT)
+        engine.tick(1);
+      if (engine.get(SIZE - 2, 32) != TNT)
+        return engine;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package fallingsand;
+
+import java.io.*;
+import java.nio.file.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FrameCaptureTest.java: every frame that is due is either written or counted as dropped, and the game
+ * never waits for an encoder that fell behind.
+ *
+ * @author Jun Park
+ */
+class FrameCaptureTest {
+  private static final int FRAMES = 200, EVERY = 2;
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void framesTheEncoderMissesAreDropped() throws IOException {
+    SimulationEngine engine = Boards.noise(400, 400, 1);
+    File target = new File(dir.toFile(), "frames");
+    FrameCapture capture = new FrameCapture(target, engine, EVERY, 1, 1);
+    for (int frame = 0; frame < FRAMES; frame++)
+      capture.capture(engine); // Much faster than a 400x400 PNG, so the one buffer is mostly taken.
+    capture.close();
+    assertEquals(FRAMES / EVERY, capture.getWrittenCount() + capture.getDroppedCount());
+    assertTrue(capture.getDroppedCount() > 0, "Nothing dropped");
+    assertEquals(capture.getWrittenCount(), target.list().length);
+  }
+
+  @Test
+  void rawStreamHoldsTheWrittenFramesInOrder() throws IOException {
+    SimulationEngine engine = Boards.noise(100, 150, 2);
+    File target = new File(dir.toFile(), "frames.raw");
+    FrameCapture capture = new FrameCapture(target, engine, EVERY, 4, 2);
+    for (int frame = 0; frame < FRAMES; frame++)
+      capture.capture(engine);
+    capture.close();
+    assertEquals(FRAMES / EVERY, capture.getWrittenCount() + capture.getDroppedCount());
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(target)))) {
+      assertEquals(FrameCapture.MAGIC, in.readInt());
+      assertEquals(FrameCapture.VERSION, in.readInt());
+      assertEquals(100, in.readInt());
+      assertEquals(150, in.readInt());
+      byte[] cells = new byte[100 * 150];
+      int last = -1;
+      for (long k = 0; k < capture.getWrittenCount(); k++) {
+        int number = in.readInt();
+        assertTrue(number > last && number % EVERY == 0, "Frame " + number + " after " + last);
+        last = number;
+        in.readFully(cells);
+        assertArrayEquals(engine.getCells(), cells);
+      }
+      assertEquals(-1, in.read());
+    }
+  }
+}
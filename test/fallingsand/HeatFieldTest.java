@@ -0,0 +1,85 @@
+package fallingsand;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HeatFieldTest.java: lava poured on a sea sets and leaves most of the sea standing, while lava in the
+ * open air stays molten; a new board starts at AMBIENT; and the field steps the same on a pool as on one thread.
+ *
+ * @author Jun Park
+ */
+class HeatFieldTest {
+  private static final int SIZE = 128;
+  private static final long UPDATES_PER_CELL = 100;
+
+  @Test
+  void lavaOnWaterSets() {
+    SimulationEngine engine = new SimulationEngine(SIZE, SIZE, 3);
+    engine.fillRect(0, 0, SIZE, SIZE, METAL);
+    engine.fillRect(1, 1, SIZE - 2, SIZE - 2, EMPTY);
+    engine.fillRect(SIZE - 48, 1, 47, SIZE - 2, WATER);
+    engine.fillRect(SIZE - 51, 4, 3, SIZE - 8, LAVA);
+    long water = engine.getPopulation(WATER), lava = engine.getPopulation(LAVA);
+    engine.setHeat(new HeatField(engine, 4));
+    engine.tick(UPDATES_PER_CELL * SIZE * SIZE);
+    assertTrue(engine.getPopulation(LAVA) < lava / 5, "lava left: " + engine.getPopulation(LAVA)); // Over 90% without the quench.
+    assertTrue(engine.getPopulation(STONE) + engine.getPopulation(OBSIDIAN) > lava / 2);
+    assertTrue(engine.getPopulation(WATER) > water / 2, "water left: " + engine.getPopulation(WATER));
+  }
+
+  @Test
+  void lavaInAirStaysMolten() {
+    SimulationEngine engine = new SimulationEngine(SIZE, SIZE, 3);
+    engine.fillRect(SIZE - 8, 0, 8, SIZE, METAL);
+    engine.fillCircle(60, 64, 6, LAVA);
+    long lava = engine.getPopulation(LAVA);
+    engine.setHeat(new HeatField(engine, 4));
+    engine.tick(UPDATES_PER_CELL * SIZE * SIZE);
+    assertEquals(lava, engine.getPopulation(LAVA));
+  }
+
+  @Test
+  void newBoardStartsCold() {
+    for (boolean clear : new boolean[] {false, true}) {
+      SimulationEngine engine = new SimulationEngine(64, 64, 3);
+      HeatField heat = new HeatField(engine, 4);
+      engine.setHeat(heat);
+      engine.fillRect(0, 0, 64, 64, LAVA);
+      engine.tick(20L * 64 * 64);
+      assertTrue(heat.get(32, 32) > 1000, "The LAVA heated the field");
+      if (clear) {
+        engine.clear();
+        engine.fillRect(0, 0, 64, 64, WATER);
+      } else {
+        byte[] water = new byte[64 * 64];
+        Arrays.fill(water, (byte)WATER);
+        engine.setCells(water);
+      }
+      assertEquals(HeatField.AMBIENT, heat.get(32, 32));
+      engine.tick(64 * 64);
+      assertEquals(64 * 64, engine.getPopulation(WATER), clear ? "after clear()" : "after setCells()");
+    }
+  }
+
+  @Test
+  void bandsOnAPoolMatchOneBand() {
+    HeatField[] fields = new HeatField[2];
+    for (int k = 0; k < 2; k++) {
+      SimulationEngine engine = new SimulationEngine(512, 1024, 3); // 32768 blocks, enough for bands.
+      engine.fillCircle(100, 200, 40, LAVA);
+      engine.fillRect(300, 0, 200, 1024, WATER);
+      engine.fillCircle(400, 800, 30, ICE);
+      fields[k] = new HeatField(engine, 4);
+      fields[k].setParallelism(k == 0 ? 1 : 3);
+      for (int step = 0; step < 50; step++)
+        fields[k].step();
+    }
+    assertEquals(3, fields[1].getParallelism());
+    assertArrayEquals(fields[0].temperatures(), fields[1].temperatures());
+    fields[1].setParallelism(1);
+  }
+}
@@ -0,0 +1,61 @@
+package fallingsand;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LongMapTest.java: LongMap answers like a HashMap through puts, overwrites and removes, including
+ * keys that collide and removals in the middle of a probe chain.
+ *
+ * @author Jun Park
+ */
+class LongMapTest {
+  @Test
+  void matchesAHashMap() {
+    LongMap map = new LongMap();
+    Map<Long, Integer> expected = new HashMap<>();
+    Rng rng = new Rng(11);
+    for (int k = 0; k < 200_000; k++) {
+      long key = randomKey(rng);
+      switch (rng.nextInt(3)) {
+        case 0:
+        case 1:
+          map.put(key, k);
+          expected.put(key, k);
+          break;
+        default:
+          map.remove(key);
+          expected.remove(key);
+      }
+      if (k % 1000 == 0)
+        assertEquals(expected.size(), map.size());
+    }
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<Long, Integer> entry : expected.entrySet())
+      assertEquals((int)entry.getValue(), map.get(entry.getKey(), -1));
+    for (int k = 0; k < 10_000; k++) {
+      long key = randomKey(rng);
+      assertEquals(expected.getOrDefault(key, -1), map.get(key, -1));
+    }
+  }
+
+  @Test
+  void removeKeepsTheRestOfTheChain() {
+    LongMap map = new LongMap();
+    for (long key = 0; key < 64; key++) // Chunk keys along one row: only the low word changes.
+      map.put(key << 32, (int)key);
+    for (long key = 0; key < 64; key += 2)
+      map.remove(key << 32);
+    assertEquals(32, map.size());
+    for (long key = 0; key < 64; key++)
+      assertEquals(key % 2 == 0 ? -1 : (int)key, map.get(key << 32, -1));
+  }
+
+  // Chunk keys like SparseWorld's, from a small area so keys repeat, with a negative row or column now and then
+  private static long randomKey(Rng rng) {
+    long row = rng.nextInt(200) - 20, col = rng.nextInt(200) - 20;
+    return row << 32 | (col & 0xFFFFFFFFL);
+  }
+}
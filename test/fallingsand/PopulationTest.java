@@ -0,0 +1,79 @@
+package fallingsand;
+
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PopulationTest.java: the counts the engine keeps on every write, for the board and for each chunk,
+ * match a full scan of the board in every scheduler, with the heat field and with the bulk operations.
+ *
+ * @author Jun Park
+ */
+class PopulationTest {
+  private static final int ROWS = 150, COLS = 200;
+
+  @Test
+  void serial() {
+    check(TickMode.STOCHASTIC, 1, false);
+  }
+
+  @Test
+  void sweep() {
+    check(TickMode.SWEEP, 1, false);
+  }
+
+  @Test
+  void parallel() {
+    check(TickMode.STOCHASTIC, 3, false);
+  }
+
+  @Test
+  void heat() {
+    check(TickMode.STOCHASTIC, 1, true);
+  }
+
+  // Paints, pastes, blows up and runs a busy board, checking the counts after every step of the way
+  private static void check(TickMode mode, int threads, boolean heat) {
+    SimulationEngine engine = Boards.played(ROWS, COLS, 2);
+    engine.setTickMode(mode);
+    engine.setParallelism(threads);
+    if (heat)
+      engine.setHeat(new HeatField(engine, 4));
+    Rng rng = new Rng(5);
+    int[] tools = {SAND, WATER, OIL, LAVA, FIRE, ICE, STEAM, GAS, VIRUS, TNT, WOOD, LEAF, EMPTY};
+    for (int round = 0; round < 30; round++) {
+      int tool = tools[rng.nextInt(tools.length)];
+      engine.stroke(rng.nextInt(ROWS), rng.nextInt(COLS), rng.nextInt(ROWS), rng.nextInt(COLS), tool, rng.nextInt(8));
+      if (round % 5 == 0)
+        engine.paste(engine.copy(rng.nextInt(ROWS), rng.nextInt(COLS), 40, 60), rng.nextInt(ROWS) - 20, rng.nextInt(COLS) - 30);
+      if (round % 7 == 0) {
+        engine.fillCircle(rng.nextInt(ROWS), rng.nextInt(COLS), 6, TNT);
+        engine.fillCircle(rng.nextInt(ROWS), rng.nextInt(COLS), 2, FIRE);
+      }
+      assertCounts(engine);
+      engine.tick(rng.nextInt(3 * ROWS * COLS));
+      assertCounts(engine);
+    }
+    engine.setParallelism(1);
+  }
+
+  private static void assertCounts(SimulationEngine engine) {
+    long[] population = new long[Interactions.TYPES];
+    int chunkCols = engine.getChunkCols();
+    int[][] chunkPopulation = new int[engine.getChunkCount()][Interactions.TYPES];
+    for (int row = 0; row < ROWS; row++) {
+      for (int col = 0; col < COLS; col++) {
+        int type = engine.get(row, col);
+        population[type]++;
+        chunkPopulation[(row >> CHUNK_SHIFT) * chunkCols + (col >> CHUNK_SHIFT)][type]++;
+      }
+    }
+    for (int type = 0; type < Interactions.TYPES; type++) {
+      assertEquals(population[type], engine.getPopulation(type), typeName(type));
+      for (int chunk = 0; chunk < chunkPopulation.length; chunk++)
+        assertEquals(chunkPopulation[chunk][type], engine.getPopulation(chunk, type), typeName(type) + " in chunk " + chunk);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package fallingsand;
+
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RegionTest.java: a region only holds particle types, keeps its own copy of them, and copy() then paste()
+ * moves the cells and their counts.
+ *
+ * @author Jun Park
+ */
+class RegionTest {
+  @Test
+  void rejectsBytesThatAreNoType() {
+    assertThrows(IllegalArgumentException.class, () -> new Region(1, 2, new byte[] {SAND, (byte)Interactions.TYPES}));
+    assertThrows(IllegalArgumentException.class, () -> new Region(1, 2, new byte[] {-1, SAND}));
+    assertThrows(IllegalArgumentException.class, () -> new Region(2, 2, new byte[3]));
+    assertEquals(WATER, new Region(1, 2, new byte[] {SAND, WATER}).get(0, 1));
+  }
+
+  @Test
+  void keepsItsOwnCells() {
+    byte[] cells = {SAND, WATER};
+    Region region = new Region(1, 2, cells);
+    cells[0] = (byte)Interactions.TYPES; // Would be no type, and paste() would count it.
+    assertEquals(SAND, region.get(0, 0));
+  }
+
+  @Test
+  void copyThenPasteMovesTheCells() {
+    SimulationEngine engine = new SimulationEngine(100, 150, 1);
+    engine.fillCircle(20, 30, 8, WATER);
+    engine.fillRect(25, 20, 5, 30, STONE);
+    Region region = engine.copy(10, 20, 25, 30);
+    SimulationEngine other = new SimulationEngine(100, 150, 1);
+    other.paste(region, 60, 130); // The right part is cut off.
+    for (int row = 0; row < 25; row++)
+      for (int col = 0; col < 20; col++)
+        assertEquals(engine.get(10 + row, 20 + col), other.get(60 + row, 130 + col));
+    long water = 0;
+    for (byte cell : other.getCells())
+      if (cell == WATER)
+        water++;
+    assertEquals(water, other.getPopulation(WATER));
+  }
+}
@@ -0,0 +1,166 @@
+package fallingsand;
+
+import java.io.*;
+import java.nio.file.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReplayTest.java: the board only depends on the step count and the input, not on how the steps were
+ * cut into ticks, so a recorded session replays to the board the live game ended with.
+ *
+ * @author Jun Park
+ */
+class ReplayTest {
+  private static final int ROWS = 100, COLS = 150;
+  private static final int[] TOOLS = {SAND, WATER, OIL, LAVA, FIRE, ICE, STEAM, STONE, WOOD, GAS, TNT, TNT};
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void ticksCanBeCutAnywhereSerial() {
+    assertSameBoard(TickMode.STOCHASTIC, 1, false);
+  }
+
+  @Test
+  void ticksCanBeCutAnywhereInSweeps() {
+    assertSameBoard(TickMode.SWEEP, 1, false);
+  }
+
+  @Test
+  void ticksCanBeCutAnywhereInParallel() {
+    assertSameBoard(TickMode.STOCHASTIC, 2, false);
+  }
+
+  @Test
+  void ticksCanBeCutAnywhereWithHeat() {
+    assertSameBoard(TickMode.STOCHASTIC, 1, true);
+  }
+
+  @Test
+  void explosionsIgnoreTickCuts() {
+    SimulationEngine sliced = engine(TickMode.STOCHASTIC, 1, false), whole = engine(TickMode.STOCHASTIC, 1, false);
+    for (SimulationEngine engine : new SimulationEngine[] {sliced, whole}) {
+      engine.fillRect(40, 40, 20, 60, TNT);
+      engine.fillRect(60, 40, 2, 60, FIRE);
+    }
+    for (int k = 0; k < 100; k++)
+      sliced.tick(1000);
+    whole.tick(100_000);
+    assertTrue(whole.getPopulation(TNT) < 20 * 60, "The TNT went off");
+    assertArrayEquals(whole.getCells(), sliced.getCells());
+  }
+
+  @Test
+  void replayMatchesLiveSession() {
+    for (TickMode mode : TickMode.values())
+      for (boolean heat : new boolean[] {false, true})
+        assertEquals(record(mode, heat, new File(dir.toFile(), mode + "-" + heat + ".log")).checksum(),
+                     new SessionReplay(new File(dir.toFile(), mode + "-" + heat + ".log")).run().checksum(), mode + ", heat " + heat);
+  }
+
+  @Test
+  void heldBrushIsLoggedAsHolds() {
+    File file = new File(dir.toFile(), "held.log");
+    SimulationEngine engine = engine(TickMode.STOCHASTIC, 1, false);
+    try (SessionRecorder recorder = new SessionRecorder(file, engine)) {
+      recorder.stroked(engine.getStepCount(), 10, 20, 10, 70, SAND, 2);
+      engine.stroke(10, 20, 10, 70, SAND, 2);
+      for (int tick = 0; tick < 1000; tick++) { // Held still at the end of the stroke, like the window repaints it.
+        engine.tick(1000);
+        recorder.stroked(engine.getStepCount(), 10, 70, 10, 70, SAND, 2);
+        engine.stroke(10, 70, 10, 70, SAND, 2);
+      }
+      recorder.close(engine.getStepCount());
+    }
+    assertTrue(file.length() < 3 * 1000 + 100, file.length() + " bytes");
+    assertEquals(engine.checksum(), new SessionReplay(file).run().checksum());
+  }
+
+  @Test
+  void oldClickLogsStillReplay() throws IOException {
+    File file = new File(dir.toFile(), "clicks.log");
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+      out.writeInt(SessionRecorder.MAGIC);
+      out.writeInt(2);
+      out.writeInt(ROWS);
+      out.writeInt(COLS);
+      out.writeLong(42);
+      out.writeByte(TickMode.STOCHASTIC.ordinal());
+      out.writeByte(0); // No steps before the recording.
+      out.writeByte(SessionRecorder.CLICK);
+      out.writeByte(100); // Steps, row, column and tool.
+      out.writeByte(50);
+      out.writeByte(60);
+      out.writeByte(STONE);
+      out.writeByte(SessionRecorder.END);
+      out.writeByte(0);
+    }
+    SimulationEngine engine = engine(TickMode.STOCHASTIC, 1, false);
+    engine.tick(100);
+    engine.set(50, 60, STONE);
+    assertEquals(engine.checksum(), new SessionReplay(file).run().checksum());
+  }
+
+  // Plays the same input once in small ticks of random length, like the window does, and once in one tick per gap between events
+  private static void assertSameBoard(TickMode mode, int threads, boolean heat) {
+    SimulationEngine sliced = engine(mode, threads, heat), whole = engine(mode, threads, heat);
+    Rng input = new Rng(5), cuts = new Rng(6);
+    for (int event = 0; event < 200; event++) {
+      long gap = 2000 + input.nextInt(40_000);
+      for (long left = gap; left > 0; ) {
+        long n = Math.min(left, 1 + cuts.nextInt(5000));
+        sliced.tick(n);
+        left -= n;
+      }
+      whole.tick(gap);
+      paint(input, sliced, whole);
+    }
+    sliced.setParallelism(1);
+    whole.setParallelism(1);
+    assertEquals(sliced.getStepCount(), whole.getStepCount());
+    assertArrayEquals(whole.getCells(), sliced.getCells());
+  }
+
+  private static SimulationEngine engine(TickMode mode, int threads, boolean heat) {
+    SimulationEngine engine = new SimulationEngine(ROWS, COLS, 42);
+    engine.setTickMode(mode);
+    engine.setParallelism(threads);
+    if (heat)
+      engine.setHeat(new HeatField(engine, 4));
+    return engine;
+  }
+
+  // Paints one random stroke into each engine
+  private static void paint(Rng input, SimulationEngine... engines) {
+    int fromRow = input.nextInt(ROWS), fromCol = input.nextInt(COLS);
+    int toRow = input.nextInt(ROWS), toCol = input.nextInt(COLS);
+    int tool = TOOLS[input.nextInt(TOOLS.length)], radius = input.nextInt(4);
+    for (SimulationEngine engine : engines)
+      engine.stroke(fromRow, fromCol, toRow, toCol, tool, radius);
+  }
+
+  // A session like the window's: ticks of random length, with strokes between some of them
+  private static SimulationEngine record(TickMode mode, boolean heat, File file) {
+    SimulationEngine engine = engine(mode, 1, heat);
+    Rng input = new Rng(7), cuts = new Rng(8);
+    try (SessionRecorder recorder = new SessionRecorder(file, engine)) {
+      for (int tick = 0; tick < 2000; tick++) {
+        engine.tick(1 + cuts.nextInt(5000));
+        if (cuts.nextInt(10) == 0) {
+          int fromRow = input.nextInt(ROWS), fromCol = input.nextInt(COLS);
+          int toRow = input.nextInt(ROWS), toCol = input.nextInt(COLS);
+          int tool = TOOLS[input.nextInt(TOOLS.length)], radius = input.nextInt(4);
+          recorder.stroked(engine.getStepCount(), fromRow, fromCol, toRow, toCol, tool, radius);
+          engine.stroke(fromRow, fromCol, toRow, toCol, tool, radius);
+        }
+      }
+      recorder.close(engine.getStepCount());
+    }
+    return engine;
+  }
+}
@@ -0,0 +1,95 @@
+package fallingsand;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RunIndexTest.java: RunIndex.runEnd() finds the same end as a walk along the row, however the
+ * board was written (one cell at a time, a span at a time or in bulk).
+ *
+ * @author Jun Park
+ */
+class RunIndexTest {
+  private static final int ROWS = 6, COLS = 5000; // Wide enough for runs that cross whole summary words.
+  private static final int[] TYPES = {EMPTY, WATER, OIL, LAVA, STEAM, SAND};
+
+  @Test
+  void matchesALinearScan() {
+    Rng rng = new Rng(7);
+    byte[] cells = new byte[ROWS * COLS];
+    for (int row = 0; row < ROWS; row++)
+      fillRuns(rng, cells, row, 0, COLS - 1);
+    RunIndex index = new RunIndex(cells, ROWS, COLS);
+    check(rng, cells, index);
+    for (int round = 0; round < 200; round++) {
+      int row = rng.nextInt(ROWS);
+      switch (round % 3) {
+        case 0: // Single cells, like the rules write them.
+          for (int k = 0; k < 50; k++) {
+            int i = row * COLS + rng.nextInt(COLS), type = TYPES[rng.nextInt(TYPES.length)];
+            index.changed(i, cells[i], type);
+            cells[i] = (byte)type;
+          }
+          break;
+        case 1: { // A span of one type, like fillRect().
+          int from = rng.nextInt(COLS), to = Math.min(COLS - 1, from + rng.nextInt(3000)), type = TYPES[rng.nextInt(TYPES.length)];
+          for (int col = from; col <= to; col++)
+            cells[row * COLS + col] = (byte)type;
+          index.filled(row, from, to, type);
+          break;
+        }
+        default: { // Any cells, like paste().
+          int from = rng.nextInt(COLS), to = Math.min(COLS - 1, from + rng.nextInt(3000));
+          fillRuns(rng, cells, row, from, to);
+          index.reindex(cells, row, from, to);
+        }
+      }
+      check(rng, cells, index);
+    }
+  }
+
+  @Test
+  void clearForgetsEverything() {
+    byte[] cells = new byte[ROWS * COLS];
+    Arrays.fill(cells, (byte)WATER);
+    RunIndex index = new RunIndex(cells, ROWS, COLS);
+    assertEquals(-1, index.runEnd(2, 0, WATER, COLS - 1));
+    Arrays.fill(cells, (byte)EMPTY);
+    index.clear();
+    assertEquals(10, index.runEnd(2, 10, WATER, COLS - 1));
+  }
+
+  // Fills the cells from..to of the row with runs of random types and lengths, from a cell to a few thousand
+  private static void fillRuns(Rng rng, byte[] cells, int row, int from, int to) {
+    for (int col = from; col <= to; ) {
+      int length = 1 + rng.nextInt(rng.nextInt(4) == 0 ? 4000 : 70);
+      byte type = (byte)TYPES[rng.nextInt(TYPES.length)];
+      for (int end = Math.min(to + 1, col + length); col < end; col++)
+        cells[row * COLS + col] = type;
+    }
+  }
+
+  // Asks for the ends of random runs of the indexed liquids, in both directions
+  private static void check(Rng rng, byte[] cells, RunIndex index) {
+    int[] liquids = {WATER, OIL, LAVA, STEAM};
+    for (int k = 0; k < 300; k++) {
+      int row = rng.nextInt(ROWS), col = rng.nextInt(COLS), toCol = rng.nextInt(COLS);
+      int type = rng.nextInt(2) == 0 ? cells[row * COLS + col] : liquids[rng.nextInt(liquids.length)];
+      if (type == EMPTY || type == SAND)
+        continue;
+      assertEquals(walk(cells, row, col, type, toCol), index.runEnd(row, col, type, toCol),
+                   typeName(type) + " from " + col + " to " + toCol + " in row " + row);
+    }
+  }
+
+  private static int walk(byte[] cells, int row, int col, int type, int toCol) {
+    int step = toCol < col ? -1 : 1;
+    for (int c = col; c != toCol + step; c += step)
+      if (cells[row * COLS + c] != type)
+        return c;
+    return -1;
+  }
+}
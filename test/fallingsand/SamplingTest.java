@@ -0,0 +1,29 @@
+package fallingsand;
+
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SamplingTest.java: the serial scheduler samples every awake cell equally often, also the cells of the
+ * small chunks at the right and bottom edges.
+ *
+ * @author Jun Park
+ */
+class SamplingTest {
+  @Test
+  void edgeChunksAreSampledByTheirArea() {
+    int size = CHUNK_SIZE + 8; // One whole chunk, two 32x8 ones and an 8x8 one in the corner.
+    SimulationEngine engine = new SimulationEngine(size, size, 1);
+    engine.fillRect(0, 0, size, size, ICE); // Restless, so no chunk sleeps, and ICE next to ICE does nothing.
+    engine.fillRect(CHUNK_SIZE, CHUNK_SIZE, 8, 7, METAL); // The corner chunk, but for a column of ICE.
+    try (SimulationMetrics metrics = new SimulationMetrics(engine)) {
+      engine.setMetrics(metrics);
+      engine.tick(200L * size * size);
+      long[] updates = metrics.getUpdatesByType();
+      double share = (double)updates[METAL] / (updates[METAL] + updates[ICE]);
+      assertEquals(8 * 7.0 / (size * size), share, 0.005, "Share of the samples in the METAL");
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package fallingsand;
+
+import java.awt.*;
+import java.awt.image.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SandDisplayTest.java: the triple buffer between the simulation and the screen. A paint shows the
+ * last published frame, whole, however the publishes and paints interleave, even though publish()
+ * only copies the tiles that changed since each buffer was last filled.
+ *
+ * @author Jun Park
+ */
+class SandDisplayTest {
+  private static final int ROWS = 40, COLS = 60; // 3x4 tiles, the last row and column of them cut off.
+  private static final int CELL = 10; // SandDisplay's cell size for this board.
+
+  @Test
+  void paintShowsTheLastPublishedFrame() {
+    SandDisplay display = new SandDisplay(ROWS, COLS);
+    int[] pixels = display.getPixels();
+    int tileCols = (COLS + SimulationEngine.TILE_SIZE - 1) / SimulationEngine.TILE_SIZE;
+    int tiles = tileCols * ((ROWS + SimulationEngine.TILE_SIZE - 1) / SimulationEngine.TILE_SIZE);
+    Rng rng = new Rng(1);
+    int[] published = pixels.clone();
+    for (int round = 0; round < 300; round++) {
+      int tile = rng.nextInt(tiles), color = rng.nextInt(1 << 24);
+      int top = tile / tileCols * SimulationEngine.TILE_SIZE, left = tile % tileCols * SimulationEngine.TILE_SIZE;
+      for (int row = top; row < Math.min(ROWS, top + SimulationEngine.TILE_SIZE); row++)
+        for (int col = left; col < Math.min(COLS, left + SimulationEngine.TILE_SIZE); col++)
+          pixels[row * COLS + col] = color;
+      if (rng.nextInt(3) == 0) // Drawn into, but not published yet.
+        assertArrayEquals(published, shown(display), "Round " + round);
+      display.publish(new Rectangle(left, top, SimulationEngine.TILE_SIZE, SimulationEngine.TILE_SIZE), new int[] {tile}, 1);
+      published = pixels.clone();
+      for (int k = rng.nextInt(3); k > 0; k--) // Frames with nothing new, which the EDT may miss.
+        display.publish(new Rectangle(), new int[0], 0);
+      if (rng.nextInt(2) == 0) {
+        assertArrayEquals(published, shown(display), "Round " + round);
+        assertArrayEquals(published, shown(display), "Round " + round + ", painted again"); // Not FRESH: the same frame.
+      }
+    }
+  }
+
+  // Paints the display into an image and reads back one pixel per cell
+  private static int[] shown(SandDisplay display) {
+    BufferedImage image = new BufferedImage(COLS * CELL, ROWS * CELL, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    display.paintComponent(g);
+    g.dispose();
+    int[] cells = new int[ROWS * COLS];
+    for (int row = 0; row < ROWS; row++)
+      for (int col = 0; col < COLS; col++)
+        cells[row * COLS + col] = image.getRGB(col * CELL, row * CELL) & 0xFFFFFF;
+    return cells;
+  }
+}
@@ -0,0 +1,47 @@
+package fallingsand;
+
+import java.lang.management.*;
+import javax.management.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SimulationMetricsTest.java: every engine's metrics can be registered over JMX in the same JVM, and
+ * close() takes them off again and stops their sampler thread.
+ *
+ * @author Jun Park
+ */
+class SimulationMetricsTest {
+  @Test
+  void twoEnginesRegisterUnderTwoNames() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try (SimulationMetrics first = new SimulationMetrics(new SimulationEngine(10, 10, 1));
+         SimulationMetrics second = new SimulationMetrics(new SimulationEngine(20, 20, 1))) {
+      ObjectName firstName = first.register(), secondName = second.register();
+      assertNotEquals(firstName, secondName);
+      assertTrue(server.isRegistered(firstName));
+      assertTrue(server.isRegistered(secondName));
+    }
+  }
+
+  @Test
+  void closeUnregistersAndStopsTheSampler() throws InterruptedException {
+    long before = samplerThreads();
+    SimulationMetrics metrics = new SimulationMetrics(new SimulationEngine(10, 10, 1));
+    metrics.log(1);
+    ObjectName name = metrics.register();
+    assertEquals(before + 1, samplerThreads());
+    metrics.close();
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    for (int wait = 0; wait < 100 && samplerThreads() > before; wait++)
+      Thread.sleep(10); // The pool has terminated, but its thread may take a moment to end.
+    assertEquals(before, samplerThreads());
+    metrics.close(); // Twice is fine.
+  }
+
+  // Live threads of the SimulationMetrics samplers
+  private static long samplerThreads() {
+    return Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().equals("metrics") && t.isAlive()).count();
+  }
+}
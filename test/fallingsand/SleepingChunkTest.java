@@ -0,0 +1,66 @@
+package fallingsand;
+
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SleepingChunkTest.java: chunks only fall asleep once nothing in them can move, so a lone falling
+ * particle lands however slowly it moves, in every scheduler.
+ *
+ * @author Jun Park
+ */
+class SleepingChunkTest {
+  private static final int SIZE = 128;
+  private static final int GRAINS = 40;
+  private static final long UPDATES_PER_CELL = 2000;
+
+  @Test
+  void sandLandsSerial() {
+    assertEquals(0, floating(SAND, TickMode.STOCHASTIC, 1));
+  }
+
+  @Test
+  void waterLandsSerial() {
+    assertEquals(0, floating(WATER, TickMode.STOCHASTIC, 1));
+  }
+
+  @Test
+  void sandLandsInSweeps() {
+    assertEquals(0, floating(SAND, TickMode.SWEEP, 1));
+  }
+
+  @Test
+  void waterLandsInParallel() {
+    assertEquals(0, floating(WATER, TickMode.STOCHASTIC, 2));
+  }
+
+  @Test
+  void settledPileFallsAsleep() {
+    SimulationEngine engine = new SimulationEngine(SIZE, SIZE, 1);
+    engine.fillRect(0, 40, 20, 48, SAND);
+    engine.tick(UPDATES_PER_CELL * SIZE * SIZE);
+    assertEquals(0, engine.getAwakeChunkCount());
+  }
+
+  // Drops GRAINS particles of the type at random cells for a few seeds and counts the ones still over EMPTY at the end
+  private static int floating(int type, TickMode mode, int threads) {
+    int floating = 0;
+    for (long seed = 1; seed <= 5; seed++) {
+      SimulationEngine engine = new SimulationEngine(SIZE, SIZE, seed);
+      engine.setTickMode(mode);
+      engine.setParallelism(threads);
+      Rng rng = new Rng(seed * 31);
+      for (int k = 0; k < GRAINS; k++)
+        engine.set(rng.nextInt(SIZE - 1), rng.nextInt(SIZE), type);
+      engine.tick(UPDATES_PER_CELL * SIZE * SIZE);
+      engine.setParallelism(1);
+      for (int row = 0; row < SIZE - 1; row++)
+        for (int col = 0; col < SIZE; col++)
+          if (engine.get(row, col) == type && engine.get(row + 1, col) == EMPTY)
+            floating++;
+    }
+    return floating;
+  }
+}
@@ -0,0 +1,72 @@
+package fallingsand;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SnapshotTest.java: a saved board loads back cell for cell, also when it is bigger than the file
+ * buffer, and a board of another size keeps its top left corner.
+ *
+ * @author Jun Park
+ */
+class SnapshotTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void roundTrip() throws IOException {
+    SimulationEngine engine = Boards.played(100, 150, 5);
+    File file = new File(dir.toFile(), "board.snap");
+    Snapshot.save(engine, file);
+    SimulationEngine loaded = new SimulationEngine(100, 150, 1);
+    Snapshot.load(loaded, file);
+    Boards.assertSame(engine, loaded);
+  }
+
+  @Test
+  void roundTripOfNoise() throws IOException {
+    SimulationEngine engine = Boards.noise(1000, 1500, 9); // Short runs: the file is bigger than the buffer.
+    File file = new File(dir.toFile(), "noise.snap");
+    Snapshot.save(engine, file);
+    assertTrue(file.length() > 1 << 20);
+    SimulationEngine loaded = new SimulationEngine(1000, 1500, 1);
+    Snapshot.load(loaded, file);
+    Boards.assertSame(engine, loaded);
+  }
+
+  @Test
+  void otherSizesKeepTheTopLeftCorner() throws IOException {
+    SimulationEngine engine = Boards.played(100, 150, 5);
+    File file = new File(dir.toFile(), "board.snap");
+    Snapshot.save(engine, file);
+    SimulationEngine small = new SimulationEngine(60, 70, 1), big = new SimulationEngine(120, 200, 1);
+    Snapshot.load(small, file);
+    Snapshot.load(big, file);
+    for (int row = 0; row < 120; row++) {
+      for (int col = 0; col < 200; col++) {
+        int type = row < 100 && col < 150 ? engine.get(row, col) : EMPTY;
+        assertEquals(type, big.get(row, col));
+        if (row < 60 && col < 70)
+          assertEquals(type, small.get(row, col));
+      }
+    }
+  }
+
+  @Test
+  void rejectsDamagedFiles() throws IOException {
+    File file = new File(dir.toFile(), "board.snap");
+    Snapshot.save(Boards.played(100, 150, 5), file);
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+    assertThrows(IOException.class, () -> Snapshot.load(new SimulationEngine(100, 150, 1), file));
+    bytes[0] ^= 1;
+    Files.write(file.toPath(), bytes);
+    assertThrows(IOException.class, () -> Snapshot.load(new SimulationEngine(100, 150, 1), file));
+  }
+}
@@ -0,0 +1,95 @@
+package fallingsand;
+
+import java.io.*;
+import java.nio.file.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SparseWorldTest.java: a world keeps its cells through paging out, closing and opening the file
+ * again, and EMPTY chunks give their space back.
+ *
+ * @author Jun Park
+ */
+class SparseWorldTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void roundTripThroughTheFile() throws IOException {
+    File file = new File(dir.toFile(), "world.dat");
+    SimulationEngine engine = new SimulationEngine(100, 150, 1);
+    engine.fillCircle(40, 60, 25, SAND);
+    engine.fillRect(80, 0, 20, 150, WATER);
+    engine.set(0, 149, TNT);
+    byte[] board = engine.getCells().clone();
+    try (SparseWorld world = new SparseWorld(file, 4)) { // Fewer chunks than the board, so storing pages them out.
+      world.store(engine, -64, 1L << 35);
+      world.set(-1L << 35, 7, LAVA);
+    }
+    try (SparseWorld world = new SparseWorld(file, 4)) {
+      SimulationEngine loaded = new SimulationEngine(100, 150, 1);
+      world.load(loaded, -64, 1L << 35);
+      assertArrayEquals(board, loaded.getCells());
+      for (int type = 0; type < Interactions.TYPES; type++)
+        assertEquals(engine.getPopulation(type), loaded.getPopulation(type), typeName(type));
+      assertEquals(LAVA, world.get(-1L << 35, 7));
+      assertEquals(EMPTY, world.get(-1L << 35, 8));
+      assertEquals(EMPTY, world.get(0, 0));
+    }
+  }
+
+  @Test
+  void emptiedChunksGiveTheirSlotsBack() throws IOException {
+    File file = new File(dir.toFile(), "world.dat");
+    SimulationEngine engine = new SimulationEngine(64, 64, 1);
+    engine.fillRect(0, 0, 64, 64, STONE);
+    try (SparseWorld world = new SparseWorld(file, 16)) {
+      world.store(engine, 0, 0);
+      world.flush();
+      assertEquals(4, world.getStoredCount());
+      engine.clear();
+      world.store(engine, 0, 0);
+      world.flush();
+      assertEquals(0, world.getStoredCount());
+      world.store(engine, 0, 0);
+    }
+    try (SparseWorld world = new SparseWorld(file, 16)) {
+      assertEquals(0, world.getStoredCount());
+    }
+  }
+
+  @Test
+  void cellsAtTheEdgesOfTheWorldKeep() throws IOException {
+    File file = new File(dir.toFile(), "world.dat");
+    long[][] corners = {{SparseWorld.MIN, SparseWorld.MIN}, {SparseWorld.MIN, 0}, {SparseWorld.MIN, SparseWorld.MAX},
+                        {SparseWorld.MAX, SparseWorld.MIN}, {SparseWorld.MAX, SparseWorld.MAX}, {0, SparseWorld.MIN}};
+    try (SparseWorld world = new SparseWorld(file, 2)) {
+      for (long[] corner : corners)
+        world.set(corner[0], corner[1], SAND);
+    }
+    try (SparseWorld world = new SparseWorld(file, 2)) {
+      assertEquals(corners.length, world.getStoredCount());
+      for (long[] corner : corners)
+        assertEquals(SAND, world.get(corner[0], corner[1]), corner[0] + ", " + corner[1]);
+    }
+  }
+
+  @Test
+  void rejectsCellsOutsideTheWorld() throws IOException {
+    try (SparseWorld world = new SparseWorld(new File(dir.toFile(), "world.dat"), 2)) {
+      assertThrows(IllegalArgumentException.class, () -> world.set(-(1L << 36), 0, SAND)); // Its key would be FREE.
+      assertThrows(IllegalArgumentException.class, () -> world.get(0, SparseWorld.MAX + 1));
+      SimulationEngine engine = new SimulationEngine(64, 64, 1);
+      assertThrows(IllegalArgumentException.class, () -> world.load(engine, SparseWorld.MAX - 31, 0));
+      WorldWindow window = new WorldWindow(world, engine, SparseWorld.MIN, 0);
+      assertThrows(IllegalArgumentException.class, () -> window.moveBy(-1, 0));
+      assertEquals(SparseWorld.MIN, window.getTop());
+      window.moveBy(1, 0);
+      assertEquals(SparseWorld.MIN + CHUNK_SIZE, window.getTop());
+    }
+  }
+}
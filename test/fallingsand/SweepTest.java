@@ -0,0 +1,51 @@
+package fallingsand;
+
+import org.junit.jupiter.api.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SweepTest.java: a sweep updates every particle at most once, so a slab over an empty gap moves
+ * at most one row per sweep, falling or rising.
+ *
+ * @author Jun Park
+ */
+class SweepTest {
+  private static final int SIZE = 128;
+  private static final int TOP = 40, THICKNESS = 20; // The slab fills these rows, wall to wall.
+
+  @Test
+  void sandFallsOneRowPerSweep() {
+    SimulationEngine engine = slab(SAND);
+    assertTrue(count(engine, TOP + THICKNESS, SAND) > 0, "The slab fell");
+    for (int row = TOP + THICKNESS + 1; row < SIZE; row++)
+      assertEquals(0, count(engine, row, SAND), "SAND in row " + row);
+    assertEquals(SIZE * THICKNESS, engine.getPopulation(SAND));
+  }
+
+  @Test
+  void gasRisesOneRowPerSweep() {
+    SimulationEngine engine = slab(GAS);
+    assertTrue(count(engine, TOP - 1, GAS) > 0, "The slab rose");
+    for (int row = 0; row < TOP - 1; row++)
+      assertEquals(0, count(engine, row, GAS), "GAS in row " + row);
+  }
+
+  // The slab of the type after one sweep
+  private static SimulationEngine slab(int type) {
+    SimulationEngine engine = new SimulationEngine(SIZE, SIZE, 1);
+    engine.setTickMode(TickMode.SWEEP);
+    engine.fillRect(TOP, 0, THICKNESS, SIZE, type);
+    engine.tick((long)SIZE * SIZE);
+    return engine;
+  }
+
+  private static int count(SimulationEngine engine, int row, int type) {
+    int count = 0;
+    for (int col = 0; col < SIZE; col++)
+      if (engine.get(row, col) == type)
+        count++;
+    return count;
+  }
+}
@@ -0,0 +1,55 @@
+package fallingsand;
+
+import java.awt.image.*;
+import java.io.*;
+import java.nio.file.*;
+import javax.imageio.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WorldImageTest.java: an exported PNG imports back into the same board, and so does a picture drawn
+ * with the game's shimmering colors, like a screenshot.
+ *
+ * @author Jun Park
+ */
+class WorldImageTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void roundTrip() throws IOException {
+    SimulationEngine engine = Boards.noise(100, 150, 3);
+    File file = new File(dir.toFile(), "board.png");
+    WorldImage.save(engine, file);
+    SimulationEngine loaded = new SimulationEngine(100, 150, 1);
+    WorldImage.load(loaded, file);
+    Boards.assertSame(engine, loaded);
+  }
+
+  @Test
+  void screenshotsImportToo() throws IOException {
+    SimulationEngine engine = Boards.noise(100, 150, 4);
+    BufferedImage image = new BufferedImage(150, 100, BufferedImage.TYPE_INT_RGB);
+    Rng rng = new Rng(4);
+    for (int row = 0; row < 100; row++)
+      for (int col = 0; col < 150; col++)
+        image.setRGB(col, row, Palette.color(engine.get(row, col), rng.nextInt(Palette.NOISE_LEVELS)));
+    File file = new File(dir.toFile(), "screenshot.png");
+    ImageIO.write(image, "png", file);
+    SimulationEngine loaded = new SimulationEngine(100, 150, 1);
+    WorldImage.load(loaded, file);
+    Boards.assertSame(engine, loaded);
+  }
+
+  @Test
+  void everyColorMapsBackToItsType() {
+    for (int type = 0; type < CLEAR; type++)
+      for (int noise = 0; noise < Palette.NOISE_LEVELS; noise++)
+        assertEquals(type, WorldImage.typeOf(Palette.color(type, noise)), typeName(type) + " at noise " + noise);
+    assertEquals(EMPTY, WorldImage.typeOf(Palette.baseColor(CLEAR)));
+  }
+}
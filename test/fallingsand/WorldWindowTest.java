@@ -0,0 +1,62 @@
+package fallingsand;
+
+import java.io.*;
+import java.nio.file.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import static fallingsand.SimulationEngine.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WorldWindowTest.java: a window can walk far across a world that holds only a few chunks on the heap,
+ * and every place it left keeps what was painted there.
+ *
+ * @author Jun Park
+ */
+class WorldWindowTest {
+  private static final int ROWS = 100, COLS = 150;
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void walkAwayAndBack() throws IOException {
+    File file = new File(dir.toFile(), "world.dat");
+    SparseWorld world = new SparseWorld(file, 8); // Fewer chunks than the window holds, so walking pages them out.
+    SimulationEngine engine = new SimulationEngine(ROWS, COLS, 1);
+    WorldWindow window = new WorldWindow(world, engine, 0, 0);
+    byte[][] boards = new byte[5][];
+    for (int k = 0; k < boards.length; k++) {
+      engine.fillCircle(20 + 10 * k, 30 + 20 * k, 5 + k, k % 2 == 0 ? STONE : METAL);
+      boards[k] = engine.getCells().clone();
+      window.moveBy(-3, 1000); // Far enough that no chunk of the old place is still in the window.
+      assertEquals(0, engine.getPopulation(STONE) + engine.getPopulation(METAL));
+    }
+    assertEquals(5L * -3 * CHUNK_SIZE, window.getTop());
+    assertEquals(5L * 1000 * CHUNK_SIZE, window.getLeft());
+    window.close();
+
+    world = new SparseWorld(file, 8);
+    window = new WorldWindow(world, engine, 0, 0);
+    for (byte[] board : boards) {
+      assertArrayEquals(board, engine.getCells());
+      window.moveBy(-3, 1000);
+    }
+    window.close();
+  }
+
+  @Test
+  void smallStepsKeepTheOverlap() throws IOException {
+    SparseWorld world = new SparseWorld(new File(dir.toFile(), "world.dat"), 64);
+    SimulationEngine engine = new SimulationEngine(ROWS, COLS, 1);
+    WorldWindow window = new WorldWindow(world, engine, 0, 0);
+    engine.fillRect(40, 70, 10, 10, STONE);
+    window.moveBy(1, 2); // The rectangle moves up a chunk and left two on the screen.
+    for (int row = 0; row < ROWS; row++)
+      for (int col = 0; col < COLS; col++)
+        assertEquals(row >= 8 && row < 18 && col >= 6 && col < 16 ? STONE : EMPTY, engine.get(row, col), row + ", " + col);
+    assertEquals(100, engine.getPopulation(STONE));
+    window.close();
+  }
+}